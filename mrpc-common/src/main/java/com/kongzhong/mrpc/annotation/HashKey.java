@@ -0,0 +1,18 @@
+package com.kongzhong.mrpc.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 一致性哈希负载均衡的参数, 标注在服务接口方法的参数上.
+ * 该参数相同的请求发往同一个服务节点
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+@Target({ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface HashKey {
+}
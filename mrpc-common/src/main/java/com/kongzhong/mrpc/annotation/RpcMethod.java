@@ -0,0 +1,40 @@
+package com.kongzhong.mrpc.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * RPC方法注解, 标注在服务接口或实现类的方法上. 标注在接口上的timeout和idempotent作用于接口的所有方法
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RpcMethod {
+
+    /**
+     * 方法不会阻塞(无IO、无锁等待), 服务端在IO线程中直接执行并响应, 不再提交到业务线程池.
+     * 只适合执行时间在微秒级的方法, 阻塞的方法会拖慢同一IO线程上的所有连接.
+     *
+     * @return
+     */
+    boolean nonBlocking() default false;
+
+    /**
+     * 客户端调用超时时间(毫秒), 小于等于0时使用默认超时时间
+     *
+     * @return
+     */
+    int timeout() default 0;
+
+    /**
+     * 方法是否幂等, 只有幂等的方法在调用失败后切换节点重试
+     *
+     * @return
+     */
+    boolean idempotent() default false;
+
+}
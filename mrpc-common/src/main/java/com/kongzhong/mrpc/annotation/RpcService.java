@@ -42,4 +42,33 @@ public @interface RpcService {
      * @return
      */
     String appId() default "";
-}
\ No newline at end of file
+
+    /**
+     * 隔离线程池名称, 同名的服务共享一个线程池, 为空时使用公共线程池
+     *
+     * @return
+     */
+    String bulkhead() default "";
+
+    /**
+     * 隔离线程池的线程数, 小于等于0时使用默认值
+     *
+     * @return
+     */
+    int threads() default 0;
+
+    /**
+     * 隔离线程池的队列长度, 0为同步队列, 小于0为无界队列
+     *
+     * @return
+     */
+    int queues() default 1024;
+
+    /**
+     * 隔离线程池同时处理的最大请求数, 小于等于0时不限制
+     *
+     * @return
+     */
+    int maxConcurrency() default 0;
+
+}
@@ -10,6 +10,11 @@ public class AbortPolicyWithReport extends ThreadPoolExecutor.AbortPolicy {
 
     private final String threadName;
 
+    /**
+     * 上次输出拒绝日志的时间, 过载时每秒最多输出一次
+     */
+    private volatile long lastReportTime;
+
     /**
      * 构造器
      *
@@ -21,12 +26,16 @@ public class AbortPolicyWithReport extends ThreadPoolExecutor.AbortPolicy {
 
     @Override
     public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
-        String msg = String.format("RpcServer["
-                        + " Thread Name: %s, Pool Size: %d (active: %d, core: %d, max: %d, largest: %d), Task: %d (completed: %d),"
-                        + " Executor status:(isShutdown:%s, isTerminated:%s, isTerminating:%s)]",
-                threadName, e.getPoolSize(), e.getActiveCount(), e.getCorePoolSize(), e.getMaximumPoolSize(), e.getLargestPoolSize(),
-                e.getTaskCount(), e.getCompletedTaskCount(), e.isShutdown(), e.isTerminated(), e.isTerminating());
-        log.warn(msg);
-        throw new RejectedExecutionException(msg);
+        long now = System.currentTimeMillis();
+        if (now - lastReportTime >= 1000) {
+            lastReportTime = now;
+            String msg = String.format("RpcServer["
+                            + " Thread Name: %s, Pool Size: %d (active: %d, core: %d, max: %d, largest: %d), Task: %d (completed: %d),"
+                            + " Executor status:(isShutdown:%s, isTerminated:%s, isTerminating:%s)]",
+                    threadName, e.getPoolSize(), e.getActiveCount(), e.getCorePoolSize(), e.getMaximumPoolSize(), e.getLargestPoolSize(),
+                    e.getTaskCount(), e.getCompletedTaskCount(), e.isShutdown(), e.isTerminated(), e.isTerminating());
+            log.warn(msg);
+        }
+        throw new RejectedExecutionException("thread pool [" + threadName + "] is exhausted");
     }
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package com.kongzhong.mrpc.common.thread;
 
+import java.lang.reflect.Method;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
@@ -19,7 +23,18 @@ public class RpcThreadPool {
      * @return 返回指定了线程池之后的线程池执行器
      */
     public static Executor getExecutor(int threads, int queues) {
-        String name = "mrpc-pool";
+        return getExecutor("mrpc-pool", threads, queues);
+    }
+
+    /**
+     * @param name    线程名前缀
+     * @param threads 固定数量线程的线程池
+     * @param queues  设置线程池工作队列,  0:同步队列
+     *                <0 无界队列 LinkedBlockingQueue
+     *                >0 有界队列, 指定了容量
+     * @return 返回指定了线程池之后的线程池执行器
+     */
+    public static Executor getExecutor(String name, int threads, int queues) {
         return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
                 queues == 0 ? new SynchronousQueue<>()
                         : (queues < 0 ? new LinkedBlockingQueue<>()
@@ -27,4 +42,25 @@ public class RpcThreadPool {
                 new NamedThreadFactory(name, true), new AbortPolicyWithReport(name));
     }
 
+    /**
+     * 每个任务使用一个虚拟线程执行, 当前JVM不支持虚拟线程时返回null
+     * <p>
+     * 通过反射调用, 编译和运行在不支持虚拟线程的JDK上都不受影响.
+     *
+     * @param name 线程名前缀
+     * @return
+     */
+    public static ExecutorService getVirtualExecutor(String name) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, name + "-virtual-", 0L);
+            ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+            Method newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) newThreadPerTaskExecutor.invoke(null, threadFactory);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
 }
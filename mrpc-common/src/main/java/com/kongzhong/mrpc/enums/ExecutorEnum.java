@@ -0,0 +1,16 @@
+package com.kongzhong.mrpc.enums;
+
+/**
+ * 服务端业务执行方式
+ * <p>
+ * POOL: 固定大小的线程池
+ * VIRTUAL: 每个请求一个虚拟线程, JVM不支持时回退到线程池
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public enum ExecutorEnum {
+
+    POOL, VIRTUAL
+
+}
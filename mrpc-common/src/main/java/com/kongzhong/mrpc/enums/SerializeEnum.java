@@ -0,0 +1,51 @@
+package com.kongzhong.mrpc.enums;
+
+import com.kongzhong.mrpc.serialize.RpcSerialize;
+
+/**
+ * 内置的序列化类型, id写入协议帧头
+ *
+ * @author biezhi
+ *         2017/5/22
+ */
+public enum SerializeEnum {
+
+    UNKNOWN((byte) 0, ""),
+    KYRO((byte) 1, "com.kongzhong.mrpc.serialize.KyroSerialize"),
+    PROTOSTUFF((byte) 2, "com.kongzhong.mrpc.serialize.ProtostuffSerialize");
+
+    private byte id;
+    private String className;
+
+    SerializeEnum(byte id, String className) {
+        this.id = id;
+        this.className = className;
+    }
+
+    public byte getId() {
+        return id;
+    }
+
+    public String getClassName() {
+        return className;
+    }
+
+    /**
+     * 获取序列化实现对应的id, 自定义实现返回0
+     *
+     * @param rpcSerialize
+     * @return
+     */
+    public static byte idOf(RpcSerialize rpcSerialize) {
+        if (null == rpcSerialize) {
+            return UNKNOWN.id;
+        }
+        String className = rpcSerialize.getClass().getName();
+        for (SerializeEnum serializeEnum : values()) {
+            if (serializeEnum.className.equals(className)) {
+                return serializeEnum.id;
+            }
+        }
+        return UNKNOWN.id;
+    }
+}
@@ -0,0 +1,22 @@
+package com.kongzhong.mrpc.exception;
+
+/**
+ * 连接不可用, 请求没有发送到服务端, 任何方法都可以安全地重试到其他节点
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class RequestNotSentException extends RpcConnectionException {
+
+    public RequestNotSentException() {
+    }
+
+    public RequestNotSentException(String message) {
+        super(message);
+    }
+
+    public RequestNotSentException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
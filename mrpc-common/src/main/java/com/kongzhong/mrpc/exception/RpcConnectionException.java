@@ -0,0 +1,22 @@
+package com.kongzhong.mrpc.exception;
+
+/**
+ * 连接断开, 等待中的调用没有收到响应, 可以重试到其他节点
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class RpcConnectionException extends RpcException {
+
+    public RpcConnectionException() {
+    }
+
+    public RpcConnectionException(String message) {
+        super(message);
+    }
+
+    public RpcConnectionException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.kongzhong.mrpc.exception;
+
+/**
+ * 调用超时, 在超时时间内没有收到服务端响应
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class RpcTimeoutException extends RpcException {
+
+    public RpcTimeoutException() {
+    }
+
+    public RpcTimeoutException(String message) {
+        super(message);
+    }
+
+    public RpcTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,22 @@
+package com.kongzhong.mrpc.exception;
+
+/**
+ * 服务端繁忙, 请求在执行前被拒绝, 可以安全地重试到其他节点
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class ServerBusyException extends RpcException {
+
+    public ServerBusyException() {
+    }
+
+    public ServerBusyException(String message) {
+        super(message);
+    }
+
+    public ServerBusyException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+}
@@ -0,0 +1,44 @@
+package com.kongzhong.mrpc.model;
+
+import lombok.Data;
+import lombok.ToString;
+
+/**
+ * Http响应Body对象, 原样返回客户端传入的请求id
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+@Data
+@ToString
+public class ResponseBody {
+
+    private String requestId;
+    private Object result;
+    private Boolean success = false;
+    private String exception;
+    private String returnType;
+    private int code;
+
+    public static ResponseBody of(String requestId, RpcResponse rpcResponse) {
+        ResponseBody responseBody = new ResponseBody();
+        responseBody.setRequestId(requestId);
+        responseBody.setResult(rpcResponse.getResult());
+        responseBody.setSuccess(rpcResponse.getSuccess());
+        responseBody.setException(rpcResponse.getException());
+        responseBody.setReturnType(rpcResponse.getReturnType());
+        responseBody.setCode(rpcResponse.getCode());
+        return responseBody;
+    }
+
+    public RpcResponse toRpcResponse() {
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setResult(result);
+        rpcResponse.setSuccess(success);
+        rpcResponse.setException(exception);
+        rpcResponse.setReturnType(returnType);
+        rpcResponse.setCode(code);
+        return rpcResponse;
+    }
+
+}
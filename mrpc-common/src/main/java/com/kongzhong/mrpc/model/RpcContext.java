@@ -25,6 +25,11 @@ public class RpcContext {
 
     private ChannelHandlerContext ctx;
 
+    /**
+     * 当前请求的截止时间(毫秒时间戳), 0为不限制. 请求内发起的RPC调用继承剩余的时间
+     */
+    private long deadline;
+
     private RpcContext() {
     }
 
@@ -40,6 +45,20 @@ public class RpcContext {
         contextMap.set(new RpcContext());
     }
 
+    /**
+     * 当前请求的截止时间, 不在请求上下文中或未设置时返回0
+     *
+     * @return
+     */
+    public static long deadline() {
+        RpcContext rpcContext = contextMap.get();
+        return null == rpcContext ? 0 : rpcContext.deadline;
+    }
+
+    public static void deadline(long deadline) {
+        get().deadline = deadline;
+    }
+
     public static void remove() {
         contextMap.remove();
     }
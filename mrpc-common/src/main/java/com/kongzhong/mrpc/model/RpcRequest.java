@@ -6,6 +6,8 @@ import lombok.NoArgsConstructor;
 import lombok.ToString;
 
 import java.io.Serializable;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * RPC请求对象
@@ -16,11 +18,61 @@ import java.io.Serializable;
 @ToString
 public class RpcRequest implements Serializable {
 
-    private String requestId;
+    /**
+     * 请求id由协议帧头携带, 不参与序列化
+     */
+    private transient long requestId;
     private String className;
     private String methodName;
     private Class<?>[] parameterTypes;
     private Object[] parameters;
     private Class<?> returnType;
 
+    /**
+     * 服务端在握手时分配的方法id, 大于0时服务端按id查找方法, 不再传输类名和方法签名
+     */
+    private int methodId;
+
+    /**
+     * 方法签名, 仅在客户端用于查找方法id
+     */
+    private transient String signature;
+
+    /**
+     * 客户端发送时剩余的超时时间(毫秒), 服务端收到后换算为本地的截止时间
+     */
+    private long timeout;
+
+    /**
+     * 截止时间(毫秒时间戳), 客户端等待到该时间为止, 服务端超过该时间不再执行
+     */
+    private transient long deadline;
+
+    /**
+     * 一致性哈希负载均衡使用的参数值, 仅在客户端使用
+     */
+    private transient Object hashKey;
+
+    /**
+     * 方法是否幂等, 仅在客户端用于判断能否重试
+     */
+    private transient boolean idempotent;
+
+    /**
+     * 本次调用已经失败的节点, 重试时不再选择, 仅在客户端使用
+     */
+    private transient Set<String> excludes;
+
+    /**
+     * 重试时排除已经失败的节点
+     *
+     * @param address
+     */
+    public void exclude(String address) {
+        if (null == excludes) {
+            excludes = new HashSet<>();
+        }
+        excludes.add(address);
+    }
+
 }
\ No newline at end of file
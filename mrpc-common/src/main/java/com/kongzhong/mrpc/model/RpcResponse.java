@@ -12,12 +12,30 @@ import java.io.Serializable;
 @ToString
 public class RpcResponse implements Serializable {
 
-    private String requestId;
+    /**
+     * 服务端繁忙, 请求未执行
+     */
+    public static final int CODE_BUSY = 1;
+
+    /**
+     * 请求在服务端排队时已经超过截止时间, 未执行
+     */
+    public static final int CODE_DEADLINE_EXCEEDED = 2;
+
+    /**
+     * 请求id由协议帧头携带, 不参与序列化
+     */
+    private transient long requestId;
     private Object result;
     private Boolean success = false;
     private String exception;
     private String returnType;
 
+    /**
+     * 失败类型, 0为业务执行结果, 其他见CODE_*常量
+     */
+    private int code;
+
     public RpcResponse() {
 
     }
@@ -1,5 +1,8 @@
 package com.kongzhong.mrpc.serialize;
 
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
 /**
  * RPC序列化接口
  *
@@ -22,6 +25,20 @@ public interface RpcSerialize {
      */
     <T> byte[] serialize(T obj) throws Exception;
 
+    /**
+     * 将对象序列化后直接写入输出流
+     * <p>
+     * 默认实现先序列化为byte数组再写入, 支持流式写入的序列化实现应覆盖该方法
+     *
+     * @param obj java对象
+     * @param out 输出流
+     * @param <T> 泛型
+     * @throws Exception
+     */
+    default <T> void serialize(T obj, OutputStream out) throws Exception {
+        out.write(serialize(obj));
+    }
+
     /**
      * 反序列化数据为Class类型
      *
@@ -33,4 +50,21 @@ public interface RpcSerialize {
      */
     <T> T deserialize(byte[] data, Class<T> clazz) throws Exception;
 
+    /**
+     * 从ByteBuffer中反序列化数据为Class类型, 读取position到limit之间的数据
+     * <p>
+     * 默认实现会拷贝到临时byte数组, 支持直接读取堆外内存的序列化实现应覆盖该方法
+     *
+     * @param buffer
+     * @param clazz
+     * @param <T>
+     * @return
+     * @throws Exception
+     */
+    default <T> T deserialize(ByteBuffer buffer, Class<T> clazz) throws Exception {
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return deserialize(data, clazz);
+    }
+
 }
\ No newline at end of file
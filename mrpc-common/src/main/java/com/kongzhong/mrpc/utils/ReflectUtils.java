@@ -100,6 +100,27 @@ public class ReflectUtils {
         return null;
     }
 
+    /**
+     * 获取方法签名, 如: com.kongzhong.service.UserService.getUser(java.lang.String,int)
+     *
+     * @param className
+     * @param methodName
+     * @param paramTypes
+     * @return
+     */
+    public static String signature(String className, String methodName, Class<?>[] paramTypes) {
+        StringBuilder sb = new StringBuilder(className).append('.').append(methodName).append('(');
+        if (null != paramTypes) {
+            for (int i = 0; i < paramTypes.length; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(paramTypes[i].getName());
+            }
+        }
+        return sb.append(')').toString();
+    }
+
     /**
      * 获取Method的形参名称列表
      *
@@ -29,14 +29,35 @@ public class StringUtils {
         return !isEmpty(str);
     }
 
+    /**
+     * 字符串转为整数, 为空或格式错误时返回默认值
+     */
+    public static int toInt(String str, int defaultValue) {
+        return (int) toLong(str, defaultValue);
+    }
+
+    /**
+     * 字符串转为长整数, 为空或格式错误时返回默认值
+     */
+    public static long toLong(String str, long defaultValue) {
+        if (isEmpty(str)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(str.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     public static String getUUID() {
         UUID uuid = UUID.randomUUID();
-        return uuid.toString().replaceAll("-", "");
+        return uuid.toString().replace("-", "");
     }
 
     public static String getUUID(String fix) {
         UUID uuid = UUID.randomUUID();
-        return fix + "_" + (uuid.toString().replaceAll("-", ""));
+        return fix + "_" + (uuid.toString().replace("-", ""));
     }
 
 }
\ No newline at end of file
@@ -13,6 +13,8 @@ import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProce
 import org.springframework.core.env.Environment;
 import org.springframework.util.Assert;
 
+import java.util.Map;
+
 /**
  * Spring Boot启动器
  *
@@ -38,6 +40,15 @@ public class BootRpcClient extends SimpleRpcClient implements BeanFactoryAware,
     public void postProcessBeanDefinitionRegistry(BeanDefinitionRegistry registry) throws BeansException {
     }
 
+    private void putAll(Map<String, Integer> map, String value) {
+        for (String item : value.split(",")) {
+            String[] kv = item.split("=");
+            if (kv.length == 2) {
+                map.put(kv[0].trim(), Integer.valueOf(kv[1].trim()));
+            }
+        }
+    }
+
     @Override
     public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
     }
@@ -53,6 +64,19 @@ public class BootRpcClient extends SimpleRpcClient implements BeanFactoryAware,
 
         this.transport = environment.getProperty("mrpc.client.transport", "tcp");
         this.appId = environment.getProperty("mrpc.client.appId", "default");
+        this.epoll = environment.getProperty("mrpc.client.epoll", Boolean.class, true);
+        this.compressThreshold = environment.getProperty("mrpc.client.compressThreshold", Integer.class, 0);
+        this.flushConsolidation = environment.getProperty("mrpc.client.flushConsolidation", Boolean.class, false);
+        this.flushBatchSize = environment.getProperty("mrpc.client.flushBatchSize", Integer.class, 0);
+        this.poolSize = environment.getProperty("mrpc.client.poolSize", Integer.class, 0);
+        this.warmup = environment.getProperty("mrpc.client.warmup", Integer.class, 0);
+        this.retryRatio = environment.getProperty("mrpc.client.retryRatio", Double.class, 0D);
+        this.retryWindow = environment.getProperty("mrpc.client.retryWindow", Integer.class, 0);
+
+        // 格式: com.xxx.UserService=3000,com.xxx.UserService.getUser=500
+        this.putAll(this.timeouts, environment.getProperty("mrpc.client.timeouts", ""));
+        // 格式: com.xxx.UserService.getUser=0
+        this.putAll(this.hashArguments, environment.getProperty("mrpc.client.hashArguments", ""));
 
         // 注册中心
         String registry = environment.getProperty("mrpc.client.registry", RegistryEnum.DEFAULT.getName());
@@ -0,0 +1,178 @@
+package com.kongzhong.mrpc.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 等待响应的调用表, 以long类型的请求id为key
+ * <p>
+ * 开放寻址(线性探测)实现, key使用原生long数组存储, 不产生装箱和字符串哈希.
+ * 按请求id分段加锁, 降低发送线程与IO线程之间的竞争.
+ *
+ * @author biezhi
+ *         2017/5/23
+ */
+public class PendingCalls {
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private static final int INITIAL_SEGMENT_CAPACITY = 64;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    public PendingCalls() {
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(INITIAL_SEGMENT_CAPACITY);
+        }
+    }
+
+    public void put(long requestId, RpcFuture future) {
+        Segment segment = segmentFor(requestId);
+        synchronized (segment) {
+            segment.put(requestId, future);
+        }
+    }
+
+    /**
+     * 移除并返回请求id对应的调用, 不存在时返回null
+     *
+     * @param requestId
+     * @return
+     */
+    public RpcFuture remove(long requestId) {
+        Segment segment = segmentFor(requestId);
+        synchronized (segment) {
+            return segment.remove(requestId);
+        }
+    }
+
+    /**
+     * 移除并返回所有等待中的调用
+     *
+     * @return
+     */
+    public List<RpcFuture> removeAll() {
+        List<RpcFuture> futures = new ArrayList<>();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.drainTo(futures);
+            }
+        }
+        return futures;
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size;
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(long requestId) {
+        return segments[(int) (requestId & (SEGMENT_COUNT - 1))];
+    }
+
+    private static int hash(long key) {
+        // 低位已经用于选择分段, 这里打散高位
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static final class Segment {
+
+        private long[] keys;
+        private RpcFuture[] values;
+        private int size;
+
+        Segment(int capacity) {
+            keys = new long[capacity];
+            values = new RpcFuture[capacity];
+        }
+
+        void put(long key, RpcFuture value) {
+            if ((size + 1) * 4 > values.length * 3) {
+                resize(values.length << 1);
+            }
+            int mask = values.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    values[i] = value;
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            size++;
+        }
+
+        RpcFuture remove(long key) {
+            int mask = values.length - 1;
+            int i = hash(key) & mask;
+            while (values[i] != null) {
+                if (keys[i] == key) {
+                    RpcFuture value = values[i];
+                    shiftBack(i);
+                    size--;
+                    return value;
+                }
+                i = (i + 1) & mask;
+            }
+            return null;
+        }
+
+        void drainTo(List<RpcFuture> futures) {
+            for (RpcFuture value : values) {
+                if (value != null) {
+                    futures.add(value);
+                }
+            }
+            keys = new long[INITIAL_SEGMENT_CAPACITY];
+            values = new RpcFuture[INITIAL_SEGMENT_CAPACITY];
+            size = 0;
+        }
+
+        /**
+         * 删除后回填后续探测链, 不使用墓碑标记
+         */
+        private void shiftBack(int hole) {
+            int mask = values.length - 1;
+            int i = (hole + 1) & mask;
+            while (values[i] != null) {
+                int home = hash(keys[i]) & mask;
+                // home不在(hole, i]区间内时, 该元素可以移动到hole
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[hole] = 0L;
+            values[hole] = null;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            RpcFuture[] oldValues = values;
+            keys = new long[capacity];
+            values = new RpcFuture[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldValues.length; j++) {
+                if (oldValues[j] != null) {
+                    int i = hash(oldKeys[j]) & mask;
+                    while (values[i] != null) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.kongzhong.mrpc.client;
+
+import com.kongzhong.mrpc.exception.RpcException;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * 同步接口的异步调用
+ * <p>
+ * 在call或run中调用一次服务引用的方法, 该调用立即返回默认值, 结果通过返回的CompletableFuture获取:
+ * <pre>
+ *     CompletableFuture&lt;User&gt; future = RpcAsync.call(() -&gt; userService.getUser(1));
+ * </pre>
+ * 只有代码块中的第一次RPC调用是异步的.
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public final class RpcAsync {
+
+    private static final FastThreadLocal<Boolean> ASYNC = new FastThreadLocal<>();
+
+    private static final FastThreadLocal<CompletableFuture<Object>> FUTURE = new FastThreadLocal<>();
+
+    private RpcAsync() {
+    }
+
+    /**
+     * 异步执行有返回值的调用
+     *
+     * @param invocation 调用服务引用方法的代码块
+     * @param <T>
+     * @return
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> CompletableFuture<T> call(Supplier<T> invocation) {
+        ASYNC.set(Boolean.TRUE);
+        CompletableFuture<Object> future;
+        try {
+            invocation.get();
+            future = FUTURE.get();
+        } finally {
+            // 代码块抛出异常时也要清除, 否则残留的future会被同一线程的下一次call取到
+            ASYNC.remove();
+            FUTURE.remove();
+        }
+        if (null == future) {
+            throw new RpcException("no rpc invocation in async block");
+        }
+        return (CompletableFuture<T>) future;
+    }
+
+    /**
+     * 异步执行无返回值的调用
+     *
+     * @param invocation 调用服务引用方法的代码块
+     * @return
+     */
+    public static CompletableFuture<Void> run(Runnable invocation) {
+        return call(() -> {
+            invocation.run();
+            return null;
+        }).thenApply(result -> null);
+    }
+
+    /**
+     * 当前调用是否需要异步执行, 读取后清除标记
+     *
+     * @return
+     */
+    public static boolean takeAsync() {
+        if (Boolean.TRUE.equals(ASYNC.get())) {
+            ASYNC.remove();
+            return true;
+        }
+        return false;
+    }
+
+    public static void setFuture(CompletableFuture<Object> future) {
+        FUTURE.set(future);
+    }
+
+}
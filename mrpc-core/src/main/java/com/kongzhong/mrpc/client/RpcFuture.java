@@ -2,55 +2,144 @@ package com.kongzhong.mrpc.client;
 
 
 import com.kongzhong.mrpc.config.DefaultConfig;
+import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.exception.RpcTimeoutException;
+import com.kongzhong.mrpc.exception.ServerBusyException;
 import com.kongzhong.mrpc.exception.ServiceException;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.utils.StringUtils;
+import io.netty.util.Timeout;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.TimeoutException;
 
+/**
+ * 等待响应的调用
+ * <p>
+ * 基于CompletableFuture实现, 不加锁. 同步调用通过get等待结果,
+ * 异步调用通过toCompletableFuture在响应到达时回调, 不占用线程.
+ * 超时由连接上的时间轮触发, 超时后从等待表中移除并以RpcTimeoutException结束.
+ */
 public class RpcFuture {
 
-    private RpcRequest request;
-    private RpcResponse response;
-    private Lock lock = new ReentrantLock();
-    private Condition finish = lock.newCondition();
+    private final RpcRequest request;
+
+    /**
+     * 调用结果, 响应到达、超时或失败时完成
+     */
+    private final CompletableFuture<Object> completable = new CompletableFuture<>();
+
+    /**
+     * 超时任务, 调用完成时取消
+     */
+    private volatile Timeout timeout;
+
+    /**
+     * 发起调用的时间(纳秒), 用于统计响应延迟
+     */
+    private final long startTime = System.nanoTime();
 
     public RpcFuture(RpcRequest request) {
         this.request = request;
     }
 
     public Object get() throws Exception {
-        return this.get(DefaultConfig.serviceTimeout());
+        long timeout = request.getTimeout();
+        return this.get(timeout > 0 ? timeout : TimeUnit.SECONDS.toMillis(DefaultConfig.serviceTimeout()), TimeUnit.MILLISECONDS);
     }
 
     public Object get(int seconds) throws Exception {
+        return this.get(seconds, TimeUnit.SECONDS);
+    }
+
+    public Object get(long timeout, TimeUnit unit) throws Exception {
         try {
-            lock.lock();
-            finish.await(seconds, TimeUnit.SECONDS);
-            if (null != response) {
-                if (StringUtils.isNotEmpty(response.getException())) {
-                    throw new ServiceException(response.getException());
-                }
-                return response.getResult();
+            return completable.get(timeout, unit);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
             }
-            return null;
-        } finally {
-            lock.unlock();
+            throw new RpcException(cause);
+        } catch (TimeoutException e) {
+            throw new RpcTimeoutException("request [" + request.getClassName() + "." + request.getMethodName() + "] timeout after " + unit.toMillis(timeout) + "ms");
         }
     }
 
     public void done(RpcResponse reponse) {
         try {
-            lock.lock();
-            finish.signal();
-            this.response = reponse;
-        } finally {
-            lock.unlock();
+            completable.complete(result(reponse));
+        } catch (Exception e) {
+            completable.completeExceptionally(e);
+        }
+        this.cancelTimeout();
+    }
+
+    /**
+     * 调用失败, 没有收到响应
+     *
+     * @param cause
+     */
+    public void fail(Throwable cause) {
+        completable.completeExceptionally(cause);
+        this.cancelTimeout();
+    }
+
+    public boolean isDone() {
+        return completable.isDone();
+    }
+
+    public void setTimeout(Timeout timeout) {
+        this.timeout = timeout;
+        // 设置前已经完成时取消
+        if (completable.isDone()) {
+            timeout.cancel();
+        }
+    }
+
+    private void cancelTimeout() {
+        Timeout t = this.timeout;
+        if (null != t) {
+            t.cancel();
+        }
+    }
+
+    /**
+     * 异步获取结果
+     *
+     * @return
+     */
+    public CompletableFuture<Object> toCompletableFuture() {
+        return completable;
+    }
+
+    /**
+     * 从发起调用到现在经过的时间(纳秒)
+     *
+     * @return
+     */
+    public long elapsedNanos() {
+        return System.nanoTime() - startTime;
+    }
+
+    public RpcRequest getRequest() {
+        return request;
+    }
+
+    private static Object result(RpcResponse response) throws Exception {
+        if (response.getCode() == RpcResponse.CODE_BUSY) {
+            throw new ServerBusyException(response.getException());
+        }
+        if (response.getCode() == RpcResponse.CODE_DEADLINE_EXCEEDED) {
+            throw new RpcTimeoutException(response.getException());
+        }
+        if (StringUtils.isNotEmpty(response.getException())) {
+            throw new ServiceException(response.getException());
         }
+        return response.getResult();
     }
 
-}
\ No newline at end of file
+}
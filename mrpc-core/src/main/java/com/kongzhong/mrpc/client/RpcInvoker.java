@@ -1,10 +1,10 @@
 package com.kongzhong.mrpc.client;
 
-import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.exception.RequestNotSentException;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.transport.SimpleClientHandler;
 
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 服务调用
@@ -20,12 +20,36 @@ public class RpcInvoker<T> {
         this.clientHandler = clientHandler;
     }
 
+    /**
+     * 调用的服务端地址, host:port
+     *
+     * @return
+     */
+    public String getServerAddress() {
+        return clientHandler.getServerAddress();
+    }
+
     public Object invoke(RpcRequest request) throws Exception {
         if (!clientHandler.getChannel().isActive()) {
-            throw new RpcException("Client Channel is unactive.");
+            throw new RequestNotSentException("Client Channel is unactive.");
         }
         RpcFuture rpcFuture = clientHandler.sendRequest(request);
         return rpcFuture.get();
     }
 
+    /**
+     * 异步调用, 响应到达时完成返回的future
+     *
+     * @param request
+     * @return
+     */
+    public CompletableFuture<Object> invokeAsync(RpcRequest request) {
+        if (!clientHandler.getChannel().isActive()) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(new RequestNotSentException("Client Channel is unactive."));
+            return future;
+        }
+        return clientHandler.sendRequest(request).toCompletableFuture();
+    }
+
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.kongzhong.mrpc.client;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.reflect.Reflection;
 import com.kongzhong.mrpc.client.cluster.Connections;
 import com.kongzhong.mrpc.client.cluster.ha.HaStrategy;
@@ -20,6 +21,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 /**
  * rpc客户端
@@ -63,6 +65,56 @@ public class SimpleRpcClient {
      */
     protected String appId;
 
+    /**
+     * Linux下native epoll可用时是否使用epoll, 默认开启
+     */
+    protected Boolean epoll;
+
+    /**
+     * 请求消息体达到该长度时压缩, 默认不压缩
+     */
+    protected int compressThreshold;
+
+    /**
+     * 是否合并请求的flush, 默认关闭
+     */
+    protected boolean flushConsolidation;
+
+    /**
+     * 合并flush时单次最多写出的消息数
+     */
+    protected int flushBatchSize;
+
+    /**
+     * 每个服务节点建立的连接数, 默认1个
+     */
+    protected int poolSize;
+
+    /**
+     * 调用超时时间(毫秒), key为服务名或服务名.方法名
+     */
+    protected Map<String, Integer> timeouts = Maps.newHashMap();
+
+    /**
+     * 一致性哈希使用的参数下标, key为服务名.方法名
+     */
+    protected Map<String, Integer> hashArguments = Maps.newHashMap();
+
+    /**
+     * 服务预热时间(秒), 默认不预热
+     */
+    protected int warmup;
+
+    /**
+     * 重试次数占调用次数的比例上限, 默认0.1
+     */
+    protected double retryRatio;
+
+    /**
+     * 重试预算的滑动窗口长度(秒), 默认10秒
+     */
+    protected int retryWindow;
+
     /**
      * 引用类名
      */
@@ -132,6 +184,26 @@ public class SimpleRpcClient {
             clientConfig.setHaStrategy(haStrategy);
             clientConfig.setTransport(transportEnum);
             clientConfig.setReferers(referers);
+            if (null != epoll) {
+                clientConfig.setEpoll(epoll);
+            }
+            clientConfig.setCompressThreshold(compressThreshold);
+            clientConfig.setFlushConsolidation(flushConsolidation);
+            if (flushBatchSize > 0) {
+                clientConfig.setFlushBatchSize(flushBatchSize);
+            }
+            if (poolSize > 0) {
+                clientConfig.setPoolSize(poolSize);
+            }
+            clientConfig.setTimeouts(timeouts);
+            clientConfig.setHashArguments(hashArguments);
+            clientConfig.setWarmup(warmup);
+            if (retryRatio > 0) {
+                clientConfig.setRetryRatio(retryRatio);
+            }
+            if (retryWindow > 0) {
+                clientConfig.setRetryWindow(retryWindow);
+            }
 
             if (null == serviceDiscovery) {
                 serviceDiscovery = new DefaultDiscovery();
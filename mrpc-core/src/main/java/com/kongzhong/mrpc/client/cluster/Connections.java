@@ -1,26 +1,27 @@
 package com.kongzhong.mrpc.client.cluster;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.kongzhong.mrpc.common.thread.RpcThreadPool;
 import com.kongzhong.mrpc.config.ClientConfig;
+import com.kongzhong.mrpc.transport.EventLoopSupport;
 import com.kongzhong.mrpc.transport.SimpleClientHandler;
 import com.kongzhong.mrpc.transport.SimpleRequestCallback;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.InetSocketAddress;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
@@ -51,20 +52,45 @@ public class Connections {
      */
     private final static int parallel = Runtime.getRuntime().availableProcessors() + 1;
 
-    private EventLoopGroup eventLoopGroup = new NioEventLoopGroup(parallel);
+    /**
+     * 首次建立连接时创建, 此时客户端配置已经初始化
+     */
+    private volatile EventLoopGroup eventLoopGroup;
 
     /**
      * 客户端 消息处理线程池
      */
     private static ListeningExecutorService TPE = MoreExecutors.listeningDecorator((ThreadPoolExecutor) RpcThreadPool.getExecutor(16, -1));
 
+    private static final Endpoint[] EMPTY = new Endpoint[0];
+
     /**
-     * 服务和服务提供方客户端映射
+     * 服务和服务提供方节点映射
      * com.kongzhong.service.UserService -> [127.0.0.1:5066, 127.0.0.1:5067]
+     * <p>
+     * 数组发布后不再修改, 变化时在锁内复制后整体替换, 调用时读取不加锁
      */
-    private Multimap<String, SimpleClientHandler> mappings = HashMultimap.create();
+    private Map<String, Endpoint[]> mappings = Maps.newConcurrentMap();
     private List<String> aliveServers = Lists.newCopyOnWriteArrayList();
 
+    /**
+     * server:port -> 节点
+     */
+    private Map<String, Endpoint> endpoints = Maps.newConcurrentMap();
+
+    /**
+     * server:port -> serviceNames, 连接池中的连接断开后按此重新建立
+     */
+    private Map<String, Set<String>> serverServices = Maps.newConcurrentMap();
+
+    /**
+     * server:port -> 注册中心最近发布的权重和启动时间, 节点断开重连后重新创建时使用
+     */
+    private Map<String, Integer> weights = Maps.newConcurrentMap();
+    private Map<String, Long> startTimes = Maps.newConcurrentMap();
+
+    private volatile boolean shutdown;
+
     private static final class ConnectionsHolder {
         private static final Connections $ = new Connections();
     }
@@ -82,6 +108,7 @@ public class Connections {
         try {
             lock.lock();
             smapping.forEach((key, serviceNames) -> {
+                serverServices.put(key, Sets.newHashSet(serviceNames));
                 // 如果不存活则建立连接
                 if (!aliveServers.contains(key)) {
                     aliveServers.add(key);
@@ -90,22 +117,72 @@ public class Connections {
                     String host = ipAddr[0];
                     //获取端口号
                     int port = Integer.parseInt(ipAddr[1]);
-                    this.connect(Sets.newHashSet(serviceNames), host, port);
+                    endpoints.computeIfAbsent(key, this::newEndpoint);
+                    for (int i = 0; i < Math.max(1, clientConfig.getPoolSize()); i++) {
+                        this.connect(Sets.newHashSet(serviceNames), host, port);
+                    }
                 }
             });
-            handlerStatus.signal();
+            handlerStatus.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 更新注册中心发布的节点权重和启动时间
+     *
+     * @param address   server:port
+     * @param weight
+     * @param startTime 服务启动时间, 未知时为0
+     */
+    public void updateWeight(String address, int weight, long startTime) {
+        try {
+            lock.lock();
+            weights.put(address, weight);
+            startTimes.put(address, startTime);
+            Endpoint endpoint = endpoints.get(address);
+            if (null != endpoint) {
+                endpoint.setWeight(weight, startTime);
+            }
         } finally {
             lock.unlock();
         }
     }
 
+    /**
+     * 创建节点, 使用注册中心已经发布的权重和启动时间
+     *
+     * @param address
+     * @return
+     */
+    private Endpoint newEndpoint(String address) {
+        Endpoint endpoint = new Endpoint(address);
+        Integer weight = weights.get(address);
+        if (null != weight) {
+            endpoint.setWeight(weight, startTimes.getOrDefault(address, 0L));
+        }
+        return endpoint;
+    }
+
     private void connect(Set<String> referNames, String host, int port) {
         //获取socket的完整地址
         final InetSocketAddress remoteAddr = new InetSocketAddress(host, port);
         while (null == clientConfig.getTransport()) {
             sleep(1);
         }
-        TPE.submit(new SimpleRequestCallback(referNames, eventLoopGroup, remoteAddr));
+        TPE.submit(new SimpleRequestCallback(referNames, eventLoopGroup(), remoteAddr));
+    }
+
+    private EventLoopGroup eventLoopGroup() {
+        if (null == eventLoopGroup) {
+            synchronized (this) {
+                if (null == eventLoopGroup) {
+                    eventLoopGroup = EventLoopSupport.newEventLoopGroup(EventLoopSupport.useEpoll(clientConfig.isEpoll()), parallel);
+                }
+            }
+        }
+        return eventLoopGroup;
     }
 
     private void sleep(int seconds) {
@@ -119,47 +196,172 @@ public class Connections {
     public void addRpcClientHandler(String serviceName, SimpleClientHandler handler) {
         try {
             lock.lock();
-            if (mappings.containsKey(serviceName)) {
-                if (!mappings.get(serviceName).contains(handler)) {
-                    mappings.put(serviceName, handler);
+            Endpoint endpoint = endpoints.computeIfAbsent(handler.getServerAddress(), this::newEndpoint);
+            if (!endpoint.contains(handler) && endpoint.size() >= Math.max(1, clientConfig.getPoolSize())) {
+                // 补连和服务发现同时建立连接时, 关闭超出连接池大小的连接
+                log.debug("Endpoint [{}] pool is full, close surplus connection", endpoint.getAddress());
+                handler.close();
+                return;
+            }
+            endpoint.add(handler);
+            Endpoint[] current = mappings.getOrDefault(serviceName, EMPTY);
+            if (!Arrays.asList(current).contains(endpoint)) {
+                if (endpoint.getLatency() == 0) {
+                    endpoint.seedLatency(this.meanLatency(current));
                 }
-            } else {
-                mappings.put(serviceName, handler);
+                Endpoint[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = endpoint;
+                mappings.put(serviceName, updated);
             }
-            handlerStatus.signal();
+            handlerStatus.signalAll();
         } finally {
             lock.unlock();
         }
     }
 
-    public List<SimpleClientHandler> getHandlers(String serviceName) throws Exception {
+    /**
+     * 节点的平均响应延迟(微秒), 没有延迟数据的节点不计入
+     *
+     * @param providers
+     * @return
+     */
+    private double meanLatency(Endpoint[] providers) {
+        double latency = 0;
+        int count = 0;
+        for (Endpoint provider : providers) {
+            double value = provider.getLatency();
+            if (value > 0) {
+                latency += value;
+                count++;
+            }
+        }
+        return count == 0 ? 0 : latency / count;
+    }
+
+    /**
+     * 获取服务的提供方节点, 返回的数组不可修改. 还没有可用节点时阻塞等待
+     *
+     * @param serviceName
+     * @return
+     * @throws Exception
+     */
+    public Endpoint[] getProviders(String serviceName) throws Exception {
+        Endpoint[] providers = mappings.get(serviceName);
+        if (null != providers && providers.length > 0) {
+            return providers;
+        }
         lock.lock();
         try {
-            while (!mappings.containsKey(serviceName) || mappings.get(serviceName).size() == 0) {
+            while (null == (providers = mappings.get(serviceName)) || providers.length == 0) {
                 // 阻塞
                 handlerStatus.await();
             }
-            return Lists.newArrayList(mappings.get(serviceName));
+            return providers;
         } finally {
             lock.unlock();
         }
     }
 
     /**
-     * 客户端移除一个失效的连接
+     * 获取服务当前的提供方节点, 不等待, 没有节点时返回空数组
+     *
+     * @param serviceName
+     * @return
+     */
+    public Endpoint[] currentProviders(String serviceName) {
+        return mappings.getOrDefault(serviceName, EMPTY);
+    }
+
+    public List<Endpoint> getEndpoints(String serviceName) throws Exception {
+        return Collections.unmodifiableList(Arrays.asList(this.getProviders(serviceName)));
+    }
+
+    /**
+     * 客户端移除一个失效的连接, 节点上没有连接时移除节点, 否则为连接池补一个连接
      *
      * @param handler
      */
     public void remove(SimpleClientHandler handler) {
-        if (mappings.values().size() > 0 && null != handler && mappings.values().contains(handler)) {
-            mappings.values().removeAll(Arrays.asList(handler));
-            aliveServers.remove(handler.getServerAddress());
+        if (null == handler || null == handler.getServerAddress()) {
+            return;
+        }
+        try {
+            lock.lock();
+            Endpoint endpoint = endpoints.get(handler.getServerAddress());
+            if (null == endpoint || !endpoint.contains(handler)) {
+                return;
+            }
+            if (endpoint.remove(handler)) {
+                this.removeEndpoint(endpoint.getAddress());
+            } else {
+                this.reconnect(endpoint.getAddress());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 节点还有其他可用连接时, 延迟重新建立断开的连接, 避免连接池逐渐缩小到一个连接
+     *
+     * @param address
+     */
+    private void reconnect(String address) {
+        if (shutdown || null == eventLoopGroup) {
+            return;
+        }
+        log.debug("Reconnect pool member of [{}]", address);
+        try {
+            eventLoopGroup.schedule(() -> {
+                Set<String> serviceNames = serverServices.get(address);
+                if (shutdown || null == serviceNames || !aliveServers.contains(address)) {
+                    return;
+                }
+                String[] ipAddr = address.split(":");
+                try {
+                    this.connect(serviceNames, ipAddr[0], Integer.parseInt(ipAddr[1]));
+                } catch (RejectedExecutionException e) {
+                    log.debug("Client is shutting down, skip reconnect [{}]", address);
+                }
+            }, 1L, TimeUnit.SECONDS);
+        } catch (RejectedExecutionException e) {
+            log.debug("Client is shutting down, skip reconnect [{}]", address);
+        }
+    }
+
+    /**
+     * 服务节点连接失败, 节点上没有可用连接时移除节点, 下次服务发现时重新连接
+     *
+     * @param address
+     */
+    public void connectFailed(String address) {
+        try {
+            lock.lock();
+            Endpoint endpoint = endpoints.get(address);
+            if (null == endpoint || endpoint.size() == 0) {
+                this.removeEndpoint(address);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
+    private void removeEndpoint(String address) {
+        Endpoint endpoint = endpoints.remove(address);
+        if (null != endpoint) {
+            // 只替换包含该节点的数组, 其他服务的数组不变, 负载均衡不会重建状态
+            mappings.replaceAll((serviceName, providers) -> Arrays.asList(providers).contains(endpoint) ?
+                    Arrays.stream(providers).filter(e -> e != endpoint).toArray(Endpoint[]::new) : providers);
+        }
+        aliveServers.remove(address);
+    }
+
     public void shutdown() {
+        shutdown = true;
         TPE.shutdown();
-        eventLoopGroup.shutdownGracefully();
+        if (null != eventLoopGroup) {
+            eventLoopGroup.shutdownGracefully();
+        }
     }
 
 }
@@ -0,0 +1,260 @@
+package com.kongzhong.mrpc.client.cluster;
+
+import com.kongzhong.mrpc.transport.SimpleClientHandler;
+
+import com.kongzhong.mrpc.config.ClientConfig;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务节点
+ * <p>
+ * 一个服务端地址对应的一组连接, 调用时选择等待响应数最少的连接,
+ * 大消息占用的连接不会阻塞其他请求.
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class Endpoint {
+
+    private static final SimpleClientHandler[] EMPTY = new SimpleClientHandler[0];
+
+    public static final int DEFAULT_WEIGHT = 100;
+
+    /**
+     * 服务端地址, host:port
+     */
+    private final String address;
+
+    /**
+     * 连接列表, 变化时整体替换, 读取不加锁
+     */
+    private volatile SimpleClientHandler[] handlers = EMPTY;
+
+    /**
+     * 注册中心发布的权重
+     */
+    private volatile int weight = DEFAULT_WEIGHT;
+
+    /**
+     * 注册中心发布的服务启动时间, 未发布时为0
+     */
+    private volatile long startTime;
+
+    /**
+     * 首个连接建立的时间, 服务端未发布启动时间时用于计算预热进度
+     */
+    private volatile long connectTime;
+
+    /**
+     * 节点加入时估计的延迟(微秒), 连接还没有延迟样本时使用
+     */
+    private volatile double seedLatency;
+
+    public Endpoint(String address) {
+        this.address = address;
+    }
+
+    synchronized void add(SimpleClientHandler handler) {
+        SimpleClientHandler[] current = handlers;
+        for (SimpleClientHandler h : current) {
+            if (h == handler) {
+                return;
+            }
+        }
+        SimpleClientHandler[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = handler;
+        if (current.length == 0) {
+            connectTime = System.currentTimeMillis();
+        }
+        handlers = updated;
+    }
+
+    boolean contains(SimpleClientHandler handler) {
+        for (SimpleClientHandler h : handlers) {
+            if (h == handler) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 移除连接
+     *
+     * @param handler
+     * @return 移除后节点是否已经没有连接
+     */
+    synchronized boolean remove(SimpleClientHandler handler) {
+        SimpleClientHandler[] current = handlers;
+        int index = -1;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == handler) {
+                index = i;
+                break;
+            }
+        }
+        if (index >= 0) {
+            SimpleClientHandler[] updated = new SimpleClientHandler[current.length - 1];
+            System.arraycopy(current, 0, updated, 0, index);
+            System.arraycopy(current, index + 1, updated, index, current.length - index - 1);
+            handlers = updated;
+        }
+        return handlers.length == 0;
+    }
+
+    /**
+     * 选择等待响应数最少的可用连接, 可写的连接优先, 没有可用连接时返回null
+     *
+     * @return
+     */
+    public SimpleClientHandler select() {
+        SimpleClientHandler[] current = handlers;
+        int n = current.length;
+        if (n == 0) {
+            return null;
+        }
+        if (n == 1) {
+            return current[0].isActive() ? current[0] : null;
+        }
+        SimpleClientHandler best = null;
+        int bestScore = Integer.MAX_VALUE;
+        // 随机起点, 等待数相同时不总是落在第一个连接上
+        int start = ThreadLocalRandom.current().nextInt(n);
+        for (int i = 0; i < n; i++) {
+            SimpleClientHandler handler = current[(start + i) % n];
+            if (!handler.isActive()) {
+                continue;
+            }
+            int score = handler.getInFlight();
+            if (!handler.isWritable()) {
+                // 发送缓冲已满的连接只在没有其他选择时使用
+                score += Integer.MAX_VALUE / 2;
+            }
+            if (score < bestScore) {
+                best = handler;
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 节点上所有连接等待响应的请求数
+     *
+     * @return
+     */
+    public int getInFlight() {
+        int inFlight = 0;
+        for (SimpleClientHandler handler : handlers) {
+            inFlight += handler.getInFlight();
+        }
+        return inFlight;
+    }
+
+    void setWeight(int weight, long startTime) {
+        this.weight = Math.max(0, weight);
+        this.startTime = startTime;
+    }
+
+    /**
+     * 当前生效的权重. 启动时间在预热窗口内时, 权重从1按运行时间线性增长到配置的权重
+     *
+     * @return
+     */
+    public int getWeight() {
+        int weight = this.weight;
+        long warmup = TimeUnit.SECONDS.toMillis(ClientConfig.me().getWarmup());
+        if (weight <= 1 || warmup <= 0) {
+            return weight;
+        }
+        long uptime = System.currentTimeMillis() - (startTime > 0 ? startTime : connectTime);
+        if (uptime >= warmup) {
+            return weight;
+        }
+        // 两端时钟不一致时运行时间可能为负, 按刚启动处理
+        return (int) Math.max(1, weight * Math.max(0, uptime) / warmup);
+    }
+
+    /**
+     * 节点的负载评分, 越小越空闲. 等待响应数与平均响应延迟的乘积, 没有可用连接时为Double.MAX_VALUE
+     *
+     * @return
+     */
+    public double getScore() {
+        int inFlight = 0;
+        double latency = 0;
+        int active = 0;
+        int sampled = 0;
+        for (SimpleClientHandler handler : handlers) {
+            if (handler.isActive()) {
+                inFlight += handler.getInFlight();
+                active++;
+                if (handler.isLatencySampled()) {
+                    latency += handler.getLatency();
+                    sampled++;
+                }
+            }
+        }
+        if (active == 0) {
+            return Double.MAX_VALUE;
+        }
+        // 加1使空闲节点按延迟比较
+        return (inFlight + 1) * ((sampled == 0 ? seedLatency : latency / sampled) + 1);
+    }
+
+    /**
+     * 有延迟样本的连接的平均延迟(微秒), 还没有样本时返回节点加入时估计的延迟
+     *
+     * @return
+     */
+    public double getLatency() {
+        double latency = 0;
+        int sampled = 0;
+        for (SimpleClientHandler handler : handlers) {
+            if (handler.isLatencySampled()) {
+                latency += handler.getLatency();
+                sampled++;
+            }
+        }
+        return sampled == 0 ? seedLatency : latency / sampled;
+    }
+
+    /**
+     * 新节点按服务当前的平均延迟参与选择, 避免没有样本的节点因为延迟为0一次获得全部流量
+     *
+     * @param latency
+     */
+    void seedLatency(double latency) {
+        this.seedLatency = latency;
+    }
+
+    /**
+     * 节点上所有连接超时的请求数
+     *
+     * @return
+     */
+    public long getTimeouts() {
+        long timeouts = 0;
+        for (SimpleClientHandler handler : handlers) {
+            timeouts += handler.getTimeouts();
+        }
+        return timeouts;
+    }
+
+    public int size() {
+        return handlers.length;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    @Override
+    public String toString() {
+        return "Endpoint(" + address + ", connections=" + handlers.length + ", inFlight=" + getInFlight() + ", timeouts=" + getTimeouts() + ", score=" + String.format("%.1f", getScore()) + ", weight=" + getWeight() + ")";
+    }
+
+}
@@ -5,6 +5,8 @@ import com.kongzhong.mrpc.client.cluster.loadblance.LoadBalance;
 import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.model.RpcRequest;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * 快速失败策略
  *
@@ -15,7 +17,7 @@ public class FailFastHaStrategy implements HaStrategy {
 
     @Override
     public Object call(RpcRequest request, LoadBalance loadBalance) {
-        RpcInvoker invoker = loadBalance.getInvoker(request.getClassName());
+        RpcInvoker invoker = loadBalance.getInvoker(request);
         try {
             return invoker.invoke(request);
         } catch (Throwable e) {
@@ -23,4 +25,15 @@ public class FailFastHaStrategy implements HaStrategy {
         }
     }
 
-}
\ No newline at end of file
+    @Override
+    public CompletableFuture<Object> callAsync(RpcRequest request, LoadBalance loadBalance) {
+        try {
+            return loadBalance.getInvoker(request).invokeAsync(request);
+        } catch (Throwable e) {
+            CompletableFuture<Object> future = new CompletableFuture<>();
+            future.completeExceptionally(e instanceof RpcException ? e : new RpcException(e));
+            return future;
+        }
+    }
+
+}
@@ -2,18 +2,27 @@ package com.kongzhong.mrpc.client.cluster.ha;
 
 import com.kongzhong.mrpc.client.RpcInvoker;
 import com.kongzhong.mrpc.client.cluster.loadblance.LoadBalance;
-import com.kongzhong.mrpc.config.DefaultConfig;
+import com.kongzhong.mrpc.common.thread.RpcThreadPool;
+import com.kongzhong.mrpc.config.ClientConfig;
+import com.kongzhong.mrpc.exception.RequestNotSentException;
 import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.exception.ServerBusyException;
 import com.kongzhong.mrpc.exception.ServiceException;
 import com.kongzhong.mrpc.model.RpcRequest;
-import io.netty.util.concurrent.FastThreadLocal;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * 失效切换策略
+ * <p>
+ * 调用失败后立即切换到还没有失败过的节点重试, 不等待.
+ * 只有幂等的方法才重试, 服务端繁忙或请求没有发出时请求没有执行, 任何方法都可以重试.
+ * 重试受重试预算限制, 服务大面积失败时不会成倍放大请求量.
+ * 所有重试共用调用的截止时间, 每次重试只使用剩余的时间, 到期后不再重试.
  *
  * @author biezhi
  *         2017/4/24
@@ -21,34 +30,114 @@ import java.util.concurrent.TimeUnit;
 @Slf4j
 public class FailOverHaStrategy implements HaStrategy {
 
-    //确保每个线程持有一份单独的ArrayList<Referer<T>（FailOverHaStrategy，会有单个实例被多个线程调用）
-    protected FastThreadLocal<List> referersHolder = new FastThreadLocal<>();
+    /**
+     * 异步重试线程池. 失败的回调运行在IO线程或超时线程上, 重试不能占用这些线程
+     */
+    private static final Executor RETRY_EXECUTOR = RpcThreadPool.getExecutor("mrpc-retry", 4, 1024);
+
+    /**
+     * 首次调用时按客户端配置创建
+     */
+    private volatile RetryBudget retryBudget;
 
     @Override
     public Object call(RpcRequest request, LoadBalance loadBalance) throws Exception {
-        int rc = DefaultConfig.serviceRecryCount();
-        if (rc < 0) {
-            rc = 0;
-        }
-        for (int i = 0; i <= rc; i++) {
-            RpcInvoker referer = loadBalance.getInvoker(request.getClassName());
+        int rc = Math.max(0, ClientConfig.me().getRetryCount());
+        this.retryBudget().recordCall();
+        for (int i = 0; ; i++) {
+            RpcInvoker invoker = loadBalance.getInvoker(request);
             try {
-                return referer.invoke(request);
+                return invoker.invoke(request);
             } catch (Exception e) {
-                if (e instanceof ServiceException) {
+                if (i >= rc || !this.retry(request, invoker, e)) {
                     throw e;
-                } else if (e instanceof RpcException) {
-                    if (i >= rc) {
-                        log.error("", e);
-                        return null;
-                    }
-                    TimeUnit.MILLISECONDS.sleep(100);
-                } else {
-                    log.warn(String.format("FailOverHaStrategy Call false for request:%s error=%s", request, e.getMessage()));
                 }
             }
         }
-        throw new RpcException("FailOverHaStrategy.invoke should not come here!");
+    }
+
+    @Override
+    public CompletableFuture<Object> callAsync(RpcRequest request, LoadBalance loadBalance) {
+        CompletableFuture<Object> result = new CompletableFuture<>();
+        this.retryBudget().recordCall();
+        this.callAsync(request, loadBalance, 0, Math.max(0, ClientConfig.me().getRetryCount()), result);
+        return result;
+    }
+
+    /**
+     * 响应到达后判断是否重试, 重试在重试线程池中发往下一个节点, 不阻塞线程等待
+     */
+    private void callAsync(RpcRequest request, LoadBalance loadBalance, int times, int rc, CompletableFuture<Object> result) {
+        RpcInvoker invoker;
+        CompletableFuture<Object> future;
+        try {
+            invoker = loadBalance.getInvoker(request);
+            future = invoker.invokeAsync(request);
+        } catch (Exception e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        future.whenComplete((value, t) -> {
+            if (null == t) {
+                result.complete(value);
+                return;
+            }
+            Throwable e = t instanceof CompletionException && null != t.getCause() ? t.getCause() : t;
+            if (times >= rc || !this.retry(request, invoker, e)) {
+                result.completeExceptionally(e);
+                return;
+            }
+            try {
+                RETRY_EXECUTOR.execute(() -> this.callAsync(request, loadBalance, times + 1, rc, result));
+            } catch (RejectedExecutionException rejected) {
+                result.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * 判断失败的调用能否重试, 可以重试时排除失败的节点
+     *
+     * @param request
+     * @param invoker 失败的调用
+     * @param e
+     * @return
+     */
+    private boolean retry(RpcRequest request, RpcInvoker invoker, Throwable e) {
+        if (e instanceof ServiceException) {
+            // 业务异常, 换节点结果相同
+            return false;
+        }
+        boolean notExecuted = e instanceof ServerBusyException || e instanceof RequestNotSentException;
+        if (!notExecuted && !(request.isIdempotent() && e instanceof RpcException)) {
+            return false;
+        }
+        if (request.getDeadline() > 0) {
+            long remaining = request.getDeadline() - System.currentTimeMillis();
+            if (remaining <= 0) {
+                log.debug("request [{}.{}] deadline exceeded, stop retrying", request.getClassName(), request.getMethodName());
+                return false;
+            }
+            request.setTimeout(remaining);
+        }
+        if (!this.retryBudget().tryRetry()) {
+            log.warn("retry budget exhausted, request [{}.{}] to {} failed: {}", request.getClassName(), request.getMethodName(), invoker.getServerAddress(), e.getMessage());
+            return false;
+        }
+        request.exclude(invoker.getServerAddress());
+        log.debug("retry request [{}.{}], {} failed: {}", request.getClassName(), request.getMethodName(), invoker.getServerAddress(), e.getMessage());
+        return true;
+    }
+
+    public RetryBudget retryBudget() {
+        if (null == retryBudget) {
+            synchronized (this) {
+                if (null == retryBudget) {
+                    retryBudget = new RetryBudget(ClientConfig.me().getRetryRatio(), ClientConfig.me().getRetryWindow());
+                }
+            }
+        }
+        return retryBudget;
     }
 
 }
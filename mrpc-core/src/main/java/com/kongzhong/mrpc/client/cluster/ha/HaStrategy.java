@@ -3,6 +3,8 @@ package com.kongzhong.mrpc.client.cluster.ha;
 import com.kongzhong.mrpc.client.cluster.loadblance.LoadBalance;
 import com.kongzhong.mrpc.model.RpcRequest;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @author biezhi
  *         2017/4/24
@@ -11,4 +13,13 @@ public interface HaStrategy {
 
     Object call(RpcRequest request, LoadBalance loadBalance) throws Exception;
 
+    /**
+     * 异步调用, 调用线程不等待响应
+     *
+     * @param request
+     * @param loadBalance
+     * @return
+     */
+    CompletableFuture<Object> callAsync(RpcRequest request, LoadBalance loadBalance);
+
 }
\ No newline at end of file
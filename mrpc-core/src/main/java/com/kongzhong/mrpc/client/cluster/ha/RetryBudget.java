@@ -0,0 +1,114 @@
+package com.kongzhong.mrpc.client.cluster.ha;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * 重试预算
+ * <p>
+ * 滑动窗口内的重试次数不超过调用次数的一定比例, 另外每秒保留少量重试次数供低流量时使用.
+ * 服务大面积失败时重试不会成倍放大请求量.
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class RetryBudget {
+
+    /**
+     * 每秒保留的重试次数
+     */
+    private static final int MIN_RETRIES_PER_SECOND = 10;
+
+    private final double ratio;
+
+    private final int windowSeconds;
+
+    /**
+     * 按秒划分的窗口, 下标为秒数对窗口大小取模
+     */
+    private final Bucket[] buckets;
+
+    private final LongAdder exhausted = new LongAdder();
+
+    /**
+     * 当前时间(毫秒)
+     */
+    private final LongSupplier clock;
+
+    /**
+     * @param ratio         重试次数占调用次数的比例上限
+     * @param windowSeconds 滑动窗口长度(秒)
+     */
+    public RetryBudget(double ratio, int windowSeconds) {
+        this(ratio, windowSeconds, System::currentTimeMillis);
+    }
+
+    RetryBudget(double ratio, int windowSeconds, LongSupplier clock) {
+        this.clock = clock;
+        this.ratio = ratio;
+        this.windowSeconds = Math.max(1, windowSeconds);
+        this.buckets = new Bucket[this.windowSeconds];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new Bucket();
+        }
+    }
+
+    /**
+     * 记录一次调用
+     */
+    public void recordCall() {
+        this.current().calls.increment();
+    }
+
+    /**
+     * 申请一次重试, 预算不足时返回false
+     *
+     * @return
+     */
+    public boolean tryRetry() {
+        long now = clock.getAsLong() / 1000;
+        long calls = 0;
+        long retries = 0;
+        for (Bucket bucket : buckets) {
+            if (now - bucket.second.get() < windowSeconds) {
+                calls += bucket.calls.sum();
+                retries += bucket.retries.sum();
+            }
+        }
+        if (retries >= calls * ratio + MIN_RETRIES_PER_SECOND * windowSeconds) {
+            exhausted.increment();
+            return false;
+        }
+        this.current().retries.increment();
+        return true;
+    }
+
+    /**
+     * 因预算不足而放弃的重试次数
+     *
+     * @return
+     */
+    public long getExhausted() {
+        return exhausted.sum();
+    }
+
+    private Bucket current() {
+        long now = clock.getAsLong() / 1000;
+        Bucket bucket = buckets[(int) (now % windowSeconds)];
+        long second = bucket.second.get();
+        if (second != now && bucket.second.compareAndSet(second, now)) {
+            // 进入新的一秒, 清空上一轮的计数. 并发时允许少量计数丢失
+            bucket.calls.reset();
+            bucket.retries.reset();
+        }
+        return bucket;
+    }
+
+    private static final class Bucket {
+        private final AtomicLong second = new AtomicLong();
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder retries = new LongAdder();
+    }
+
+}
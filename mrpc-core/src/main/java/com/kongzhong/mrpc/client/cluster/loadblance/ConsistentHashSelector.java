@@ -0,0 +1,67 @@
+package com.kongzhong.mrpc.client.cluster.loadblance;
+
+import com.google.common.base.Charsets;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.kongzhong.mrpc.client.cluster.Endpoint;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 一致性哈希环
+ * <p>
+ * 每个节点按地址在环上放置若干虚拟节点, 节点加入或离开时只有相邻区间的key改变归属.
+ * 环按服务的节点数组构建, 节点数组变化时重新构建.
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+class ConsistentHashSelector {
+
+    /**
+     * 每个节点的虚拟节点数
+     */
+    static final int VIRTUAL_NODES = 160;
+
+    private static final HashFunction HASH = Hashing.murmur3_128();
+
+    /**
+     * 构建时的节点数组, 用于判断节点是否变化
+     */
+    private final Endpoint[] endpoints;
+
+    private final TreeMap<Long, Endpoint> ring = new TreeMap<>();
+
+    ConsistentHashSelector(Endpoint[] endpoints) {
+        this.endpoints = endpoints;
+        for (Endpoint endpoint : endpoints) {
+            for (int i = 0; i < VIRTUAL_NODES; i++) {
+                ring.put(hash(endpoint.getAddress() + "#" + i), endpoint);
+            }
+        }
+    }
+
+    boolean isSnapshotOf(Endpoint[] endpoints) {
+        return this.endpoints == endpoints;
+    }
+
+    /**
+     * 顺时针查找key所在位置之后的第一个节点
+     *
+     * @param key
+     * @return
+     */
+    Endpoint select(Object key) {
+        Map.Entry<Long, Endpoint> entry = ring.ceilingEntry(hash(String.valueOf(key)));
+        if (null == entry) {
+            entry = ring.firstEntry();
+        }
+        return entry.getValue();
+    }
+
+    private static long hash(String key) {
+        return HASH.hashString(key, Charsets.UTF_8).asLong();
+    }
+
+}
@@ -10,7 +10,9 @@ public enum LBStrategy {
 
     ROUND("轮询"),
     RANDOM("随机"),
-    LAST("最新节点");
+    LAST("最新节点"),
+    P2C("随机选两个节点, 取等待数和响应延迟较低的"),
+    HASH("按参数一致性哈希");
 
     private final String desc;
 
@@ -1,6 +1,7 @@
 package com.kongzhong.mrpc.client.cluster.loadblance;
 
 import com.kongzhong.mrpc.client.RpcInvoker;
+import com.kongzhong.mrpc.model.RpcRequest;
 
 /**
  * 负载均衡接口
@@ -17,4 +18,14 @@ public interface LoadBalance {
      */
     RpcInvoker getInvoker(String serviceName);
 
+    /**
+     * 根据请求查询调用执行器, 需要请求参数的策略(如一致性哈希)覆盖该方法
+     *
+     * @param request
+     * @return
+     */
+    default RpcInvoker getInvoker(RpcRequest request) {
+        return this.getInvoker(request.getClassName());
+    }
+
 }
\ No newline at end of file
@@ -1,16 +1,20 @@
 package com.kongzhong.mrpc.client.cluster.loadblance;
 
+import com.google.common.collect.Maps;
 import com.kongzhong.mrpc.client.RpcInvoker;
 import com.kongzhong.mrpc.client.cluster.Connections;
+import com.kongzhong.mrpc.client.cluster.Endpoint;
 import com.kongzhong.mrpc.config.ClientConfig;
 import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.transport.SimpleClientHandler;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.List;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 软负载简单实现
@@ -21,51 +25,114 @@ import java.util.concurrent.atomic.LongAdder;
 public class SimpleLoadBalance implements LoadBalance {
 
     private AtomicInteger posInt = new AtomicInteger(0);
-    private Random random = new Random();
 
     /**
-     * 性能优于AtomicInteger（JDK8出现）
+     * 服务名 -> 一致性哈希环
      */
-    private LongAdder posLong = new LongAdder();
+    private Map<String, ConsistentHashSelector> selectors = Maps.newConcurrentMap();
+
+    /**
+     * 服务名 -> 加权轮询状态
+     */
+    private Map<String, WeightedRoundRobin> weightedRounds = Maps.newConcurrentMap();
 
     @Override
     public RpcInvoker getInvoker(String serviceName) {
-        try {
-            LBStrategy LBStrategy = ClientConfig.me().getLbStrategy();
-            List<SimpleClientHandler> handlers = Connections.me().getHandlers(serviceName);
-            if (handlers.size() == 1) {
-                return new RpcInvoker(handlers.get(0));
-            }
-            if (LBStrategy == LBStrategy.ROUND) {
-                return new RpcInvoker(this.round(handlers));
-            }
-            if (LBStrategy == LBStrategy.RANDOM) {
-                return new RpcInvoker(this.random(handlers));
+        RpcRequest request = new RpcRequest();
+        request.setClassName(serviceName);
+        return this.getInvoker(request);
+    }
+
+    @Override
+    public RpcInvoker getInvoker(RpcRequest request) {
+        String serviceName = request.getClassName();
+        Endpoint endpoint;
+        if (null != request.getExcludes()) {
+            // 重试可能在IO线程或超时线程上发起, 不能等待节点上线
+            Endpoint[] providers = Connections.me().currentProviders(serviceName);
+            if (providers.length == 0) {
+                throw new RpcException("no provider left for service [" + serviceName + "]");
             }
-            if (LBStrategy == LBStrategy.LAST) {
-                return new RpcInvoker(this.last(handlers));
+            endpoint = this.retry(providers, request.getExcludes());
+        } else {
+            try {
+                endpoint = this.select(serviceName, Connections.me().getProviders(serviceName), request);
+            } catch (Exception e) {
+                throw new RpcException(e);
             }
-        } catch (Exception e) {
-            throw new RpcException(e);
+        }
+        SimpleClientHandler handler = null != endpoint ? endpoint.select() : null;
+        if (null == handler) {
+            throw new RpcException("no active connection for service [" + serviceName + "]");
+        }
+        return handler.getInvoker();
+    }
+
+    private Endpoint select(String serviceName, Endpoint[] endpoints, RpcRequest request) {
+        if (endpoints.length == 1) {
+            return endpoints[0];
+        }
+        LBStrategy LBStrategy = ClientConfig.me().getLbStrategy();
+        if (LBStrategy == LBStrategy.ROUND) {
+            return this.round(serviceName, endpoints);
+        }
+        if (LBStrategy == LBStrategy.RANDOM) {
+            return this.random(endpoints);
+        }
+        if (LBStrategy == LBStrategy.LAST) {
+            return this.last(endpoints);
+        }
+        if (LBStrategy == LBStrategy.P2C) {
+            return this.p2c(endpoints);
+        }
+        if (LBStrategy == LBStrategy.HASH) {
+            return this.hash(serviceName, endpoints, request.getHashKey());
         }
         return null;
     }
 
     /**
-     * poll load connection
+     * 重试时在还没有失败过的节点中随机选择, 全部失败过时在所有节点中选择.
+     * 不更新轮询和一致性哈希的状态
      *
      * @param connections
+     * @param excludes
      * @return
      */
-    private SimpleClientHandler round(List<SimpleClientHandler> connections) {
-        int pos = posInt.get();
-        if (pos >= connections.size()) {
-            posInt.set(0);
-            pos = posInt.get();
+    private Endpoint retry(Endpoint[] connections, Set<String> excludes) {
+        Endpoint[] remaining = Arrays.stream(connections).filter(endpoint -> !excludes.contains(endpoint.getAddress())).toArray(Endpoint[]::new);
+        return this.random(remaining.length > 0 ? remaining : connections);
+    }
+
+    /**
+     * poll load connection, 节点权重不同(包括预热中)时按平滑加权轮询
+     *
+     * @param serviceName
+     * @param connections
+     * @return
+     */
+    private Endpoint round(String serviceName, Endpoint[] connections) {
+        if (this.isWeighted(connections)) {
+            WeightedRoundRobin weightedRound = weightedRounds.get(serviceName);
+            if (null == weightedRound || !weightedRound.isSnapshotOf(connections)) {
+                weightedRound = new WeightedRoundRobin(connections);
+                weightedRounds.put(serviceName, weightedRound);
+            }
+            return weightedRound.select();
+        }
+        // 溢出后去掉符号位继续轮询
+        int pos = (posInt.getAndIncrement() & Integer.MAX_VALUE) % connections.length;
+        return connections[pos];
+    }
+
+    private boolean isWeighted(Endpoint[] connections) {
+        int weight = connections[0].getWeight();
+        for (int i = 1; i < connections.length; i++) {
+            if (connections[i].getWeight() != weight) {
+                return true;
+            }
         }
-        SimpleClientHandler connection = connections.get(pos);
-        posInt.addAndGet(1);
-        return connection;
+        return false;
     }
 
     /**
@@ -74,13 +141,8 @@ public class SimpleLoadBalance implements LoadBalance {
      * @param connections
      * @return
      */
-    private SimpleClientHandler random(List<SimpleClientHandler> connections) {
-        int randomPos = 0;
-        int max = connections.size();
-        if (max != 1) {
-            randomPos = random.nextInt(max);
-        }
-        return connections.get(randomPos);
+    private Endpoint random(Endpoint[] connections) {
+        return connections[ThreadLocalRandom.current().nextInt(connections.length)];
     }
 
     /**
@@ -89,9 +151,46 @@ public class SimpleLoadBalance implements LoadBalance {
      * @param connections
      * @return
      */
-    private SimpleClientHandler last(List<SimpleClientHandler> connections) {
-        return connections.get(connections.size() - 1);
+    private Endpoint last(Endpoint[] connections) {
+        return connections[connections.length - 1];
+    }
+
+    /**
+     * power of two choices: 随机选两个节点, 取负载评分较低的一个
+     *
+     * @param connections
+     * @return
+     */
+    private Endpoint p2c(Endpoint[] connections) {
+        int n = connections.length;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int i = random.nextInt(n);
+        // 第二个节点从其余节点中选, 保证两者不同
+        int j = (i + 1 + random.nextInt(n - 1)) % n;
+        Endpoint a = connections[i];
+        Endpoint b = connections[j];
+        return a.getScore() <= b.getScore() ? a : b;
     }
 
+    /**
+     * consistent hash load connection, 没有哈希参数时随机选择
+     *
+     * @param serviceName
+     * @param connections
+     * @param key
+     * @return
+     */
+    private Endpoint hash(String serviceName, Endpoint[] connections, Object key) {
+        if (null == key) {
+            return this.random(connections);
+        }
+        ConsistentHashSelector selector = selectors.get(serviceName);
+        if (null == selector || !selector.isSnapshotOf(connections)) {
+            // 节点变化后重建, 并发重建的结果相同
+            selector = new ConsistentHashSelector(connections);
+            selectors.put(serviceName, selector);
+        }
+        return selector.select(key);
+    }
 
-}
\ No newline at end of file
+}
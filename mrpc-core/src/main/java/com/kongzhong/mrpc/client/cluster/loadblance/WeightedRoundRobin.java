@@ -0,0 +1,48 @@
+package com.kongzhong.mrpc.client.cluster.loadblance;
+
+import com.kongzhong.mrpc.client.cluster.Endpoint;
+
+/**
+ * 平滑加权轮询
+ * <p>
+ * 每次选择时各节点的当前值加上自己的权重, 选出当前值最大的节点, 再减去权重总和.
+ * 权重高的节点不会连续获得大量请求, 而是均匀穿插在其他节点之间.
+ * 按服务的节点数组构建, 节点数组变化时重新构建.
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+class WeightedRoundRobin {
+
+    /**
+     * 构建时的节点数组, 用于判断节点是否变化
+     */
+    private final Endpoint[] endpoints;
+
+    private final long[] current;
+
+    WeightedRoundRobin(Endpoint[] endpoints) {
+        this.endpoints = endpoints;
+        this.current = new long[endpoints.length];
+    }
+
+    boolean isSnapshotOf(Endpoint[] endpoints) {
+        return this.endpoints == endpoints;
+    }
+
+    synchronized Endpoint select() {
+        long total = 0;
+        int best = 0;
+        for (int i = 0; i < endpoints.length; i++) {
+            int weight = endpoints[i].getWeight();
+            current[i] += weight;
+            total += weight;
+            if (current[i] > current[best]) {
+                best = i;
+            }
+        }
+        current[best] -= total;
+        return endpoints[best];
+    }
+
+}
@@ -1,14 +1,28 @@
 package com.kongzhong.mrpc.client.proxy;
 
+import com.google.common.base.Defaults;
 import com.google.common.reflect.AbstractInvocationHandler;
+import com.kongzhong.mrpc.annotation.HashKey;
+import com.kongzhong.mrpc.annotation.RpcMethod;
+import com.kongzhong.mrpc.client.RpcAsync;
 import com.kongzhong.mrpc.client.cluster.ha.HaStrategy;
+import com.kongzhong.mrpc.client.cluster.loadblance.LBStrategy;
 import com.kongzhong.mrpc.client.cluster.loadblance.LoadBalance;
 import com.kongzhong.mrpc.client.cluster.loadblance.SimpleLoadBalance;
 import com.kongzhong.mrpc.config.ClientConfig;
+import com.kongzhong.mrpc.config.DefaultConfig;
+import com.kongzhong.mrpc.exception.RpcTimeoutException;
+import com.kongzhong.mrpc.model.RpcContext;
 import com.kongzhong.mrpc.model.RpcRequest;
-import com.kongzhong.mrpc.utils.StringUtils;
+import com.kongzhong.mrpc.utils.ReflectUtils;
 
+import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * @author biezhi
@@ -16,6 +30,26 @@ import java.lang.reflect.Method;
  */
 public class SimpleClientProxy<T> extends AbstractInvocationHandler {
 
+    /**
+     * 方法签名缓存
+     */
+    private static final Map<Method, String> signatures = new ConcurrentHashMap<>();
+
+    /**
+     * 方法超时时间缓存(毫秒)
+     */
+    private static final Map<Method, Long> timeouts = new ConcurrentHashMap<>();
+
+    /**
+     * 方法的一致性哈希参数下标缓存, 没有参数时为-1
+     */
+    private static final Map<Method, Integer> hashArguments = new ConcurrentHashMap<>();
+
+    /**
+     * 方法是否幂等缓存
+     */
+    private static final Map<Method, Boolean> idempotents = new ConcurrentHashMap<>();
+
     /**
      * 负载均衡器
      */
@@ -28,10 +62,105 @@ public class SimpleClientProxy<T> extends AbstractInvocationHandler {
 
     @Override
     protected Object handleInvocation(Object proxy, Method method, Object[] args) throws Exception {
-        RpcRequest request = new RpcRequest(StringUtils.getUUID(),
-                method.getDeclaringClass().getName(), method.getName(),
-                method.getParameterTypes(), args, method.getReturnType());
+        // 请求id在发送时由连接分配
+        RpcRequest request = new RpcRequest();
+        request.setClassName(method.getDeclaringClass().getName());
+        request.setMethodName(method.getName());
+        request.setParameterTypes(method.getParameterTypes());
+        request.setParameters(args);
+        request.setReturnType(method.getReturnType());
+        request.setSignature(signatures.computeIfAbsent(method, m -> ReflectUtils.signature(m.getDeclaringClass().getName(), m.getName(), m.getParameterTypes())));
+        request.setTimeout(this.timeout(method));
+        // 重试共用同一个截止时间, 不会每次重新计算完整的超时
+        request.setDeadline(System.currentTimeMillis() + request.getTimeout());
+        request.setIdempotent(idempotents.computeIfAbsent(method, SimpleClientProxy::idempotent));
+        if (ClientConfig.me().getLbStrategy() == LBStrategy.HASH) {
+            int index = hashArguments.computeIfAbsent(method, SimpleClientProxy::hashArgument);
+            request.setHashKey(index >= 0 ? args[index] : null);
+        }
+        Class<?> returnType = method.getReturnType();
+        if (returnType == CompletableFuture.class || returnType == CompletionStage.class) {
+            return haStrategy.callAsync(request, loadBalance);
+        }
+        if (RpcAsync.takeAsync()) {
+            RpcAsync.setFuture(haStrategy.callAsync(request, loadBalance));
+            return Defaults.defaultValue(returnType);
+        }
         return haStrategy.call(request, loadBalance);
     }
 
+    /**
+     * 本次调用的超时时间, 在服务端处理请求时发起的调用不超过该请求剩余的时间
+     *
+     * @param method
+     * @return
+     */
+    private long timeout(Method method) {
+        long timeout = timeouts.computeIfAbsent(method, SimpleClientProxy::configuredTimeout);
+        long deadline = RpcContext.deadline();
+        if (deadline > 0) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                throw new RpcTimeoutException("request [" + method.getDeclaringClass().getName() + "." + method.getName() + "] deadline exceeded before invoking");
+            }
+            timeout = Math.min(timeout, remaining);
+        }
+        return timeout;
+    }
+
+    /**
+     * 方法或接口上标注了@RpcMethod(idempotent = true)时为幂等方法
+     */
+    private static boolean idempotent(Method method) {
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        if (null != rpcMethod && rpcMethod.idempotent()) {
+            return true;
+        }
+        rpcMethod = method.getDeclaringClass().getAnnotation(RpcMethod.class);
+        return null != rpcMethod && rpcMethod.idempotent();
+    }
+
+    /**
+     * 一致性哈希使用的参数下标, 优先级: @HashKey > 配置 > 第一个参数
+     */
+    private static int hashArgument(Method method) {
+        Annotation[][] annotations = method.getParameterAnnotations();
+        for (int i = 0; i < annotations.length; i++) {
+            for (Annotation annotation : annotations[i]) {
+                if (annotation instanceof HashKey) {
+                    return i;
+                }
+            }
+        }
+        Integer index = ClientConfig.me().getHashArguments().get(method.getDeclaringClass().getName() + "." + method.getName());
+        if (null != index && index >= 0 && index < annotations.length) {
+            return index;
+        }
+        return annotations.length > 0 ? 0 : -1;
+    }
+
+    /**
+     * 配置的超时时间, 优先级: 配置的方法 > 配置的服务 > 方法上的@RpcMethod > 接口上的@RpcMethod > 默认超时时间
+     */
+    private static long configuredTimeout(Method method) {
+        String serviceName = method.getDeclaringClass().getName();
+        Map<String, Integer> configs = ClientConfig.me().getTimeouts();
+        Integer timeout = configs.get(serviceName + "." + method.getName());
+        if (null == timeout) {
+            timeout = configs.get(serviceName);
+        }
+        if (null != timeout && timeout > 0) {
+            return timeout;
+        }
+        RpcMethod rpcMethod = method.getAnnotation(RpcMethod.class);
+        if (null != rpcMethod && rpcMethod.timeout() > 0) {
+            return rpcMethod.timeout();
+        }
+        rpcMethod = method.getDeclaringClass().getAnnotation(RpcMethod.class);
+        if (null != rpcMethod && rpcMethod.timeout() > 0) {
+            return rpcMethod.timeout();
+        }
+        return TimeUnit.SECONDS.toMillis(DefaultConfig.serviceTimeout());
+    }
+
 }
@@ -1,40 +1,120 @@
 package com.kongzhong.mrpc.codec;
 
+import com.kongzhong.mrpc.enums.SerializeEnum;
+import com.kongzhong.mrpc.exception.RpcException;
+import com.kongzhong.mrpc.exception.SerializeException;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.compression.Snappy;
+import lombok.extern.slf4j.Slf4j;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
 /**
  * RPC Decoder
+ *
+ * @see RpcProtocol
  */
+@Slf4j
 public class RpcDecoder extends ByteToMessageDecoder {
 
     private RpcSerialize rpcSerialize;
     private Class<?> genericClass;
+    private byte messageType;
+    private byte serializerId;
+    private Snappy snappy;
+
+    /**
+     * 对方在握手中声明接收压缩后才会发送压缩的消息, 之前收到压缩的消息视为错误
+     */
+    private boolean compression;
 
     public RpcDecoder(RpcSerialize rpcSerialize, Class<?> genericClass) {
         this.rpcSerialize = rpcSerialize;
         this.genericClass = genericClass;
+        this.messageType = RpcProtocol.messageType(genericClass);
+        this.serializerId = SerializeEnum.idOf(rpcSerialize);
     }
 
     @Override
     public final void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
-        if (in.readableBytes() < 4) {
+        if (in.readableBytes() < RpcProtocol.HEADER_LENGTH) {
             return;
         }
         in.markReaderIndex();
+        short magic = in.readShort();
+        if (magic != RpcProtocol.MAGIC) {
+            in.skipBytes(in.readableBytes());
+            throw new RpcException("illegal magic number [" + magic + "] from " + ctx.channel().remoteAddress());
+        }
+        byte version = in.readByte();
+        byte type = in.readByte();
+        byte flags = in.readByte();
+        byte serializer = in.readByte();
+        long requestId = in.readLong();
         int dataLength = in.readInt();
         if (in.readableBytes() < dataLength) {
             in.resetReaderIndex();
             return;
         }
-        byte[] data = new byte[dataLength];
-        in.readBytes(data);
-        Object obj = rpcSerialize.deserialize(data, genericClass);
+        if (version > RpcProtocol.VERSION) {
+            in.skipBytes(dataLength);
+            throw new RpcException("unsupported protocol version [" + version + "] from " + ctx.channel().remoteAddress());
+        }
+        if (type == RpcProtocol.TYPE_HANDSHAKE) {
+            RpcHandshake handshake = RpcProtocol.readHandshake(flags, in.readSlice(dataLength));
+            compression |= handshake.isCompression();
+            out.add(handshake);
+            return;
+        }
+        // 心跳、取消、流等帧类型由后续的处理器扩展, 当前直接跳过
+        if (type != messageType) {
+            in.skipBytes(dataLength);
+            log.debug("skip frame type [{}], request [{}]", type, requestId);
+            return;
+        }
+        if (serializer != serializerId && serializer != SerializeEnum.UNKNOWN.getId() && serializerId != SerializeEnum.UNKNOWN.getId()) {
+            in.skipBytes(dataLength);
+            throw new SerializeException("serializer mismatch, remote [" + serializer + "], local [" + serializerId + "]");
+        }
+        Object obj;
+        if ((flags & RpcProtocol.FLAG_COMPRESSED) != 0) {
+            if (!compression) {
+                in.skipBytes(dataLength);
+                throw new RpcException("compressed frame before compression negotiated, from " + ctx.channel().remoteAddress());
+            }
+            obj = decompress(ctx, in.readSlice(dataLength));
+        } else {
+            // 直接读取帧数据, 不再拷贝到临时byte数组
+            ByteBuffer data = in.nioBuffer(in.readerIndex(), dataLength);
+            try {
+                obj = rpcSerialize.deserialize(data, genericClass);
+            } finally {
+                in.skipBytes(dataLength);
+            }
+        }
+        RpcProtocol.requestId(obj, requestId);
         out.add(obj);
     }
 
+    private Object decompress(ChannelHandlerContext ctx, ByteBuf body) throws Exception {
+        if (null == snappy) {
+            snappy = new Snappy();
+        }
+        ByteBuf data = ctx.alloc().buffer(body.readableBytes() << 1);
+        try {
+            while (body.isReadable()) {
+                int length = body.readInt();
+                snappy.decode(body.readSlice(length), data);
+                snappy.reset();
+            }
+            return rpcSerialize.deserialize(data.nioBuffer(), genericClass);
+        } finally {
+            data.release();
+        }
+    }
+
 }
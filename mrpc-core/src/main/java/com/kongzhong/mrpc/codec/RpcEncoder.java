@@ -1,29 +1,138 @@
 package com.kongzhong.mrpc.codec;
 
+import com.kongzhong.mrpc.enums.SerializeEnum;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufOutputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToByteEncoder;
+import io.netty.handler.codec.compression.Snappy;
 
 /**
  * RPC Encoder
+ *
+ * @see RpcProtocol
  */
 public class RpcEncoder extends MessageToByteEncoder {
 
+    /**
+     * 压缩后至少节省的比例, 达不到时认为压缩效果差
+     */
+    private static final double MIN_SAVING = 0.2;
+
+    /**
+     * 压缩效果差时跳过压缩的消息数, 连续效果差时翻倍
+     */
+    private static final int MIN_BACKOFF = 16;
+    private static final int MAX_BACKOFF = 1024;
+
+    /**
+     * netty的Snappy实现使用short记录偏移量, 超过32K的数据分块压缩
+     */
+    private static final int BLOCK_SIZE = Short.MAX_VALUE;
+
     private RpcSerialize rpcSerialize;
     private Class<?> genericClass;
+    private byte messageType;
+    private byte serializerId;
+
+    /**
+     * 消息体达到该长度时压缩, 小于等于0时不压缩
+     */
+    private int compressThreshold;
+
+    /**
+     * 对方在握手中声明接收压缩后开启, 在EventLoop中读写
+     */
+    private boolean compression;
+    private Snappy snappy;
+    private int backoff = MIN_BACKOFF;
+    private int skip;
 
     public RpcEncoder(RpcSerialize rpcSerialize, Class<?> genericClass) {
+        this(rpcSerialize, genericClass, 0);
+    }
+
+    public RpcEncoder(RpcSerialize rpcSerialize, Class<?> genericClass, int compressThreshold) {
         this.rpcSerialize = rpcSerialize;
         this.genericClass = genericClass;
+        this.messageType = RpcProtocol.messageType(genericClass);
+        this.serializerId = SerializeEnum.idOf(rpcSerialize);
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * 对方确认接收压缩的消息后, 在当前连接上开启压缩
+     *
+     * @param compression
+     */
+    public void setCompression(boolean compression) {
+        this.compression = compression && compressThreshold > 0;
+        if (this.compression && null == snappy) {
+            this.snappy = new Snappy();
+        }
     }
 
     @Override
     public void encode(ChannelHandlerContext ctx, Object in, ByteBuf out) throws Exception {
+        if (in instanceof RpcHandshake) {
+            RpcProtocol.writeHandshake(out, (RpcHandshake) in);
+            return;
+        }
         if (genericClass.isInstance(in)) {
-            byte[] data = rpcSerialize.serialize(in);
-            out.writeInt(data.length);
-            out.writeBytes(data);
+            int headerIndex = out.writerIndex();
+            RpcProtocol.writeHeader(out, messageType, RpcProtocol.FLAG_NONE, serializerId, RpcProtocol.requestId(in), 0);
+            int bodyIndex = out.writerIndex();
+            // 直接序列化到输出缓冲区, 写完后回填消息体长度
+            rpcSerialize.serialize(in, new ByteBufOutputStream(out));
+            int bodyLength = out.writerIndex() - bodyIndex;
+            if (shouldCompress(bodyLength) && compress(ctx, out, bodyIndex, bodyLength)) {
+                out.setByte(headerIndex + RpcProtocol.FLAGS_OFFSET, RpcProtocol.FLAG_COMPRESSED);
+                bodyLength = out.writerIndex() - bodyIndex;
+            }
+            out.setInt(headerIndex + RpcProtocol.LENGTH_FIELD_OFFSET, bodyLength);
+        }
+    }
+
+    private boolean shouldCompress(int bodyLength) {
+        if (!compression || bodyLength < compressThreshold) {
+            return false;
+        }
+        if (skip > 0) {
+            skip--;
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 压缩消息体, 压缩效果差时保留原数据并退避一段时间
+     *
+     * @return 是否使用了压缩后的数据
+     */
+    private boolean compress(ChannelHandlerContext ctx, ByteBuf out, int bodyIndex, int bodyLength) {
+        ByteBuf compressed = ctx.alloc().buffer(bodyLength);
+        try {
+            // 每个压缩块前写入块长度: [length][snappy block]...
+            for (int offset = 0; offset < bodyLength; offset += BLOCK_SIZE) {
+                int length = Math.min(BLOCK_SIZE, bodyLength - offset);
+                int lengthIndex = compressed.writerIndex();
+                compressed.writeInt(0);
+                snappy.encode(out.slice(bodyIndex + offset, length), compressed, length);
+                snappy.reset();
+                compressed.setInt(lengthIndex, compressed.writerIndex() - lengthIndex - 4);
+            }
+            if (compressed.readableBytes() > bodyLength * (1 - MIN_SAVING)) {
+                skip = backoff;
+                backoff = Math.min(backoff << 1, MAX_BACKOFF);
+                return false;
+            }
+            backoff = MIN_BACKOFF;
+            out.writerIndex(bodyIndex);
+            out.writeBytes(compressed);
+            return true;
+        } finally {
+            compressed.release();
         }
     }
 }
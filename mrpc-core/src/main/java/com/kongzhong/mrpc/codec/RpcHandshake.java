@@ -0,0 +1,41 @@
+package com.kongzhong.mrpc.codec;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 握手消息
+ * <p>
+ * 客户端连接建立后发送空的握手消息, 服务端回复导出方法的签名与id,
+ * 之后客户端只需要在请求中携带方法id.
+ * <p>
+ * 双方在握手中声明是否接收snappy压缩的消息, 服务端只在客户端声明时确认,
+ * 收到对方的声明后才在该连接上开启压缩.
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RpcHandshake {
+
+    /**
+     * 方法签名 -> 方法id
+     */
+    private Map<String, Integer> methodIds = Collections.emptyMap();
+
+    /**
+     * 是否接收压缩的消息, 写在握手帧头的标识位中
+     */
+    private boolean compression;
+
+    public RpcHandshake(boolean compression) {
+        this.compression = compression;
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.kongzhong.mrpc.codec;
+
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.serialize.RpcSerialize;
+import io.netty.buffer.ByteBuf;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+import io.netty.util.CharsetUtil;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TCP传输协议帧定义
+ * <p>
+ * 每一帧由固定长度的帧头和序列化后的消息体组成:
+ * <pre>
+ * +-------+---------+------+-------+------------+------------+-------------+----------+
+ * | magic | version | type | flags | serializer | request id | body length |   body   |
+ * |   2   |    1    |  1   |   1   |     1      |     8      |      4      |   ...    |
+ * +-------+---------+------+-------+------------+------------+-------------+----------+
+ * </pre>
+ * 请求id由帧头携带, 序列化器只负责编码消息体.
+ * <p>
+ * 握手帧不经过序列化器, 消息体为: count(4) + count * [method id(4) + signature length(2) + signature(utf-8)]
+ *
+ * @author biezhi
+ *         2017/5/22
+ */
+public final class RpcProtocol {
+
+    /**
+     * 魔数 "mr"
+     */
+    public static final short MAGIC = 0x6D72;
+
+    /**
+     * 当前协议版本
+     */
+    public static final byte VERSION = 1;
+
+    /**
+     * 帧头长度
+     */
+    public static final int HEADER_LENGTH = 18;
+
+    /**
+     * 标识字段在帧头中的偏移量
+     */
+    public static final int FLAGS_OFFSET = 4;
+
+    /**
+     * 消息体长度字段在帧头中的偏移量
+     */
+    public static final int LENGTH_FIELD_OFFSET = HEADER_LENGTH - RpcSerialize.MESSAGE_LENGTH;
+
+    /**
+     * 最大帧长度
+     */
+    public static final int MAX_FRAME_LENGTH = Integer.MAX_VALUE;
+
+    /**
+     * 消息类型
+     */
+    public static final byte TYPE_REQUEST = 1;
+    public static final byte TYPE_RESPONSE = 2;
+    public static final byte TYPE_HEARTBEAT = 3;
+    public static final byte TYPE_CANCEL = 4;
+    public static final byte TYPE_STREAM = 5;
+    public static final byte TYPE_HANDSHAKE = 6;
+
+    /**
+     * 无任何标识
+     */
+    public static final byte FLAG_NONE = 0;
+
+    /**
+     * 消息体使用snappy压缩, 握手帧中表示接收压缩的消息
+     */
+    public static final byte FLAG_COMPRESSED = 0x01;
+
+    private RpcProtocol() {
+    }
+
+    /**
+     * 创建按帧头中消息体长度拆包的解码器
+     *
+     * @return
+     */
+    public static LengthFieldBasedFrameDecoder newFrameDecoder() {
+        return new LengthFieldBasedFrameDecoder(MAX_FRAME_LENGTH, LENGTH_FIELD_OFFSET, RpcSerialize.MESSAGE_LENGTH, 0, 0);
+    }
+
+    /**
+     * 根据消息类型获取帧类型
+     *
+     * @param type
+     * @return
+     */
+    public static byte messageType(Class<?> type) {
+        if (RpcRequest.class.isAssignableFrom(type)) {
+            return TYPE_REQUEST;
+        }
+        if (RpcResponse.class.isAssignableFrom(type)) {
+            return TYPE_RESPONSE;
+        }
+        throw new IllegalArgumentException("unsupported message type [" + type.getName() + "]");
+    }
+
+    /**
+     * 写入帧头
+     *
+     * @param out
+     * @param type
+     * @param flags
+     * @param serializer
+     * @param requestId
+     * @param bodyLength
+     */
+    public static void writeHeader(ByteBuf out, byte type, byte flags, byte serializer, long requestId, int bodyLength) {
+        out.writeShort(MAGIC);
+        out.writeByte(VERSION);
+        out.writeByte(type);
+        out.writeByte(flags);
+        out.writeByte(serializer);
+        out.writeLong(requestId);
+        out.writeInt(bodyLength);
+    }
+
+    /**
+     * 写入握手帧
+     *
+     * @param out
+     * @param handshake
+     */
+    public static void writeHandshake(ByteBuf out, RpcHandshake handshake) {
+        int headerIndex = out.writerIndex();
+        writeHeader(out, TYPE_HANDSHAKE, handshake.isCompression() ? FLAG_COMPRESSED : FLAG_NONE, (byte) 0, 0L, 0);
+        int bodyIndex = out.writerIndex();
+        Map<String, Integer> methodIds = handshake.getMethodIds();
+        out.writeInt(methodIds.size());
+        methodIds.forEach((signature, id) -> {
+            byte[] bytes = signature.getBytes(CharsetUtil.UTF_8);
+            out.writeInt(id);
+            out.writeShort(bytes.length);
+            out.writeBytes(bytes);
+        });
+        out.setInt(headerIndex + LENGTH_FIELD_OFFSET, out.writerIndex() - bodyIndex);
+    }
+
+    /**
+     * 读取握手帧的消息体
+     *
+     * @param flags 帧头中的标识
+     * @param in
+     * @return
+     */
+    public static RpcHandshake readHandshake(byte flags, ByteBuf in) {
+        int count = in.readInt();
+        Map<String, Integer> methodIds = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            int length = in.readUnsignedShort();
+            methodIds.put(in.readCharSequence(length, CharsetUtil.UTF_8).toString(), id);
+        }
+        return new RpcHandshake(methodIds, (flags & FLAG_COMPRESSED) != 0);
+    }
+
+    /**
+     * 获取消息的请求id
+     *
+     * @param message
+     * @return
+     */
+    public static long requestId(Object message) {
+        if (message instanceof RpcRequest) {
+            return ((RpcRequest) message).getRequestId();
+        }
+        if (message instanceof RpcResponse) {
+            return ((RpcResponse) message).getRequestId();
+        }
+        return 0L;
+    }
+
+    /**
+     * 将帧头中的请求id回填到消息
+     *
+     * @param message
+     * @param requestId
+     */
+    public static void requestId(Object message, long requestId) {
+        if (message instanceof RpcRequest) {
+            ((RpcRequest) message).setRequestId(requestId);
+        } else if (message instanceof RpcResponse) {
+            ((RpcResponse) message).setRequestId(requestId);
+        }
+    }
+
+}
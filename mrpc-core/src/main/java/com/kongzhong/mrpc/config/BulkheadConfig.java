@@ -0,0 +1,47 @@
+package com.kongzhong.mrpc.config;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 服务隔离线程池配置
+ * <p>
+ * services中可以是服务名, 也可以是 服务名.方法名, 后者只把该方法划入隔离池.
+ * 配置的参数优先于@RpcService上声明的参数.
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+@Data
+@NoArgsConstructor
+public class BulkheadConfig {
+
+    /**
+     * 线程数
+     */
+    private int threads = 16;
+
+    /**
+     * 队列长度, 0为同步队列, 小于0为无界队列
+     */
+    private int queues = 1024;
+
+    /**
+     * 同时处理的最大请求数(排队和执行中), 小于等于0时不限制
+     */
+    private int maxConcurrency;
+
+    /**
+     * 使用该隔离池的服务或方法
+     */
+    private List<String> services;
+
+    public BulkheadConfig(int threads, int queues, int maxConcurrency) {
+        this.threads = threads;
+        this.queues = queues;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+}
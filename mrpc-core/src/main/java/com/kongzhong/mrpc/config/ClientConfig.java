@@ -8,7 +8,9 @@ import lombok.AccessLevel;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 /**
  * @author biezhi
@@ -34,6 +36,56 @@ public class ClientConfig {
 
     private int retryCount = 3;
 
+    /**
+     * 滑动窗口内重试次数占调用次数的比例上限
+     */
+    private double retryRatio = 0.1;
+
+    /**
+     * 重试预算的滑动窗口长度(秒)
+     */
+    private int retryWindow = 10;
+
+    /**
+     * Linux下native epoll可用时是否使用epoll
+     */
+    private boolean epoll = true;
+
+    /**
+     * 请求消息体达到该长度时压缩, 小于等于0时不压缩
+     */
+    private int compressThreshold;
+
+    /**
+     * 是否合并请求的flush
+     */
+    private boolean flushConsolidation;
+
+    /**
+     * 合并flush时单次最多写出的消息数
+     */
+    private int flushBatchSize = 64;
+
+    /**
+     * 每个服务节点建立的连接数
+     */
+    private int poolSize = 1;
+
+    /**
+     * 调用超时时间(毫秒), key为服务名或服务名.方法名, 方法优先于服务
+     */
+    private Map<String, Integer> timeouts = Collections.emptyMap();
+
+    /**
+     * 一致性哈希使用的参数下标, key为服务名.方法名. 未配置且没有@HashKey时使用第一个参数
+     */
+    private Map<String, Integer> hashArguments = Collections.emptyMap();
+
+    /**
+     * 服务预热时间(秒), 新启动的服务节点在该时间内逐渐增加权重. 0为不预热
+     */
+    private int warmup;
+
     private List<Class<?>> referers;
 
     private static final ClientConfig conf = new ClientConfig();
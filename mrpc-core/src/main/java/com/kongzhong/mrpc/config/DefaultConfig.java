@@ -73,6 +73,24 @@ public class DefaultConfig {
         return 10;
     }
 
+    /**
+     * 响应延迟移动平均中新样本的权重
+     *
+     * @return
+     */
+    public static double latencyEwmaAlpha() {
+        return 0.2;
+    }
+
+    /**
+     * 响应延迟移动平均的衰减时间(毫秒), 长时间没有样本时旧的平均值逐渐失效
+     *
+     * @return
+     */
+    public static long latencyDecayMillis() {
+        return 10_000;
+    }
+
     /**
      * 默认的负载均衡策略
      *
@@ -19,6 +19,41 @@ public class NettyConfig {
     private int lowWaterMark = 32 * 1024;
     private int highWaterMark = 64 * 1024;
 
+    /**
+     * Linux下native epoll可用时是否使用epoll
+     */
+    private boolean epoll = true;
+
+    /**
+     * 使用epoll时通过SO_REUSEPORT绑定的acceptor个数
+     */
+    private int acceptors = 1;
+
+    /**
+     * 响应消息体达到该长度时压缩, 小于等于0时不压缩
+     */
+    private int compressThreshold;
+
+    /**
+     * 是否合并响应的flush
+     */
+    private boolean flushConsolidation = true;
+
+    /**
+     * 合并flush时单次最多写出的消息数
+     */
+    private int flushBatchSize = 64;
+
+    /**
+     * 业务线程池线程数
+     */
+    private int businessThreads = 16;
+
+    /**
+     * 业务线程池队列长度, 队列满时直接返回服务繁忙. 0为同步队列, 小于0为无界队列
+     */
+    private int businessQueues = 1024;
+
     public NettyConfig(int backlog, boolean keepalive) {
         this.backlog = backlog;
         this.keepalive = keepalive;
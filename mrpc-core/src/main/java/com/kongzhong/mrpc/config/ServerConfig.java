@@ -19,6 +19,19 @@ public class ServerConfig {
     private String appId = "default";
     private TransportEnum transport;
     private RpcSerialize rpcSerialize;
+    private boolean flushConsolidation;
+    private int flushBatchSize;
+    private int compressThreshold;
+
+    /**
+     * 服务权重, 随注册信息发布, 客户端按权重分配请求
+     */
+    private int weight = 100;
+
+    /**
+     * 服务启动时间, 随注册信息发布, 客户端据此计算预热进度
+     */
+    private final long startTime = System.currentTimeMillis();
 
     private static final ServerConfig conf = new ServerConfig();
 
@@ -4,8 +4,6 @@ import com.kongzhong.mrpc.model.RpcRequest;
 import lombok.Data;
 import org.springframework.cglib.reflect.FastMethod;
 
-import java.util.List;
-
 /**
  * 拦截器执行器
  * <p>
@@ -19,13 +17,13 @@ public class Invocation {
     private FastMethod fastMethod;
     private Object[] parameters;
 
-    //拦截器
-    private List<RpcInteceptor> interceptors;
+    //拦截器, 服务注册时按方法预先生成, 不可修改
+    private RpcInteceptor[] interceptors;
 
-    //当前Interceptor索引值，初始值：-1，范围：0-interceptors.size()-1
+    //当前Interceptor索引值，初始值：-1，范围：0-interceptors.length-1
     private int currentIndex = -1;
 
-    public Invocation(FastMethod fastMethod, Object target, Object[] parameters, RpcRequest request, List<RpcInteceptor> interceptors) {
+    public Invocation(FastMethod fastMethod, Object target, Object[] parameters, RpcRequest request, RpcInteceptor[] interceptors) {
         this.fastMethod = fastMethod;
         this.target = target;
         this.request = request;
@@ -34,10 +32,10 @@ public class Invocation {
     }
 
     public Object next() throws Exception {
-        if (this.currentIndex == this.interceptors.size() - 1) {
+        if (this.currentIndex == this.interceptors.length - 1) {
             return fastMethod.invoke(this.target, this.parameters);
         } else {
-            RpcInteceptor interceptor = this.interceptors.get(++this.currentIndex);
+            RpcInteceptor interceptor = this.interceptors[++this.currentIndex];
             return interceptor.execute(this);
         }
     }
@@ -1,5 +1,7 @@
 package com.kongzhong.mrpc.interceptor;
 
+import java.lang.reflect.Method;
+
 /**
  * RPC请求拦截器
  *
@@ -10,4 +12,14 @@ public interface RpcInteceptor {
 
     Object execute(Invocation invocation) throws Exception;
 
+    /**
+     * 是否拦截该方法, 在服务注册时判断一次, 不拦截的方法调用时不经过该拦截器
+     *
+     * @param method 服务导出的方法
+     * @return
+     */
+    default boolean supports(Method method) {
+        return true;
+    }
+
 }
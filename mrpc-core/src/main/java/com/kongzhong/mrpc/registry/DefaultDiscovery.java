@@ -5,6 +5,7 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.io.Files;
 import com.kongzhong.mrpc.client.cluster.Connections;
+import com.kongzhong.mrpc.client.cluster.Endpoint;
 import com.kongzhong.mrpc.utils.JSONUtils;
 import com.kongzhong.mrpc.utils.StringUtils;
 import lombok.extern.slf4j.Slf4j;
@@ -39,10 +40,12 @@ public class DefaultDiscovery implements ServiceDiscovery {
             if (StringUtils.isNotEmpty(content)) {
                 List<Map<String, String>> array = JSONUtils.parseObject(content, List.class);
                 Map<String, Set<String>> mappings = Maps.newHashMap();
+                Map<String, Map<String, String>> nodes = Maps.newHashMap();
                 for (int i = 0, len = array.size(); i < len; i++) {
                     Map<String, String> object = array.get(i);
                     String serviceName = object.get("service");
                     String address = object.get("addr");
+                    nodes.put(address, object);
 
                     if (!mappings.containsKey(address)) {
                         mappings.put(address, Sets.newHashSet(serviceName));
@@ -51,6 +54,9 @@ public class DefaultDiscovery implements ServiceDiscovery {
                     }
                 }
                 Connections.me().updateNodes(mappings);
+                // 旧版本服务端没有发布权重和启动时间
+                nodes.forEach((address, object) -> Connections.me().updateWeight(address,
+                        StringUtils.toInt(object.get("weight"), Endpoint.DEFAULT_WEIGHT), StringUtils.toLong(object.get("timestamp"), 0)));
             }
         } catch (Exception e) {
             log.error("discover fail", e);
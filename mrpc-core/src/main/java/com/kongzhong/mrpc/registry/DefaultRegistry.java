@@ -92,6 +92,8 @@ public class DefaultRegistry implements ServiceRegistry {
         Map<String, String> obj = new HashMap<>();
         obj.put("service", serviceName);
         obj.put("addr", host + ":" + port);
+        obj.put("weight", String.valueOf(ServerConfig.me().getWeight()));
+        obj.put("timestamp", String.valueOf(ServerConfig.me().getStartTime()));
         return obj;
     }
 
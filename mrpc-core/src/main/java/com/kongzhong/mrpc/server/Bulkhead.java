@@ -0,0 +1,139 @@
+package com.kongzhong.mrpc.server;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.kongzhong.mrpc.common.thread.RpcThreadPool;
+import com.kongzhong.mrpc.config.BulkheadConfig;
+import com.kongzhong.mrpc.transport.SimpleResponseCallback;
+
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 服务隔离线程池
+ * <p>
+ * 一组服务或方法独占的线程池, 慢服务只会占满自己的队列, 不影响其他服务.
+ * 队列满或超过最大并发数时拒绝请求. 异步服务方法在返回的CompletionStage完成前一直占用并发数.
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class Bulkhead {
+
+    private final String name;
+
+    private final BulkheadConfig config;
+
+    private final ThreadPoolExecutor executor;
+
+    private final ListeningExecutorService listeningExecutor;
+
+    /**
+     * 最大并发数限制, 未配置时为null
+     */
+    private final Semaphore permits;
+
+    private final LongAdder submitted = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(String name, BulkheadConfig config) {
+        this.name = name;
+        this.config = config;
+        this.executor = (ThreadPoolExecutor) RpcThreadPool.getExecutor("mrpc-" + name, Math.max(1, config.getThreads()), config.getQueues());
+        this.listeningExecutor = MoreExecutors.listeningDecorator(executor);
+        this.permits = config.getMaxConcurrency() > 0 ? new Semaphore(config.getMaxConcurrency()) : null;
+    }
+
+    /**
+     * 提交任务, 队列已满或超过最大并发数时抛出RejectedExecutionException
+     *
+     * @param task
+     * @param <T>
+     * @return
+     */
+    public <T> ListenableFuture<T> submit(SimpleResponseCallback<T> task) {
+        if (null != permits && !permits.tryAcquire()) {
+            rejected.increment();
+            throw new RejectedExecutionException("bulkhead [" + name + "] reached max concurrency " + config.getMaxConcurrency());
+        }
+        try {
+            ListenableFuture<T> future = listeningExecutor.submit(task);
+            submitted.increment();
+            if (null != permits) {
+                future.addListener(() -> this.release(task), MoreExecutors.directExecutor());
+            }
+            return future;
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            if (null != permits) {
+                permits.release();
+            }
+            throw new RejectedExecutionException("bulkhead [" + name + "] queue is full", e);
+        }
+    }
+
+    /**
+     * 同步方法执行结束时释放, 异步方法在返回的CompletionStage完成时释放
+     *
+     * @param task
+     */
+    private void release(SimpleResponseCallback<?> task) {
+        CompletionStage<?> asyncResult = task.getAsyncResult();
+        if (null == asyncResult) {
+            permits.release();
+        } else {
+            asyncResult.whenComplete((result, e) -> permits.release());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 排队中的请求数
+     *
+     * @return
+     */
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * 执行中的请求数
+     *
+     * @return
+     */
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCompleted() {
+        return executor.getCompletedTaskCount();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "Bulkhead(" + name + ", threads=" + executor.getMaximumPoolSize() +
+                ", active=" + getActiveCount() + ", queueDepth=" + getQueueDepth() +
+                ", submitted=" + getSubmitted() + ", completed=" + getCompleted() + ", rejected=" + getRejected() + ")";
+    }
+
+}
@@ -1,11 +1,21 @@
 package com.kongzhong.mrpc.server;
 
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.kongzhong.mrpc.annotation.RpcService;
+import com.kongzhong.mrpc.config.BulkheadConfig;
 import com.kongzhong.mrpc.interceptor.RpcInteceptor;
+import com.kongzhong.mrpc.utils.ReflectUtils;
+import com.kongzhong.mrpc.utils.StringUtils;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cglib.reflect.FastClass;
 
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -15,6 +25,7 @@ import java.util.Map;
  * @author biezhi
  *         2017/4/24
  */
+@Slf4j
 @Data
 @NoArgsConstructor
 public class RpcMapping {
@@ -22,18 +33,190 @@ public class RpcMapping {
     private Map<String, Object> handlerMap = Maps.newConcurrentMap();
     private List<RpcInteceptor> inteceptors = Lists.newArrayList();
 
+    /**
+     * 方法表, 下标即方法id, 0号位置不使用. 只追加不删除, 已发布的id保持不变
+     */
+    private volatile ServiceMethod[] serviceMethods = new ServiceMethod[1];
+
+    /**
+     * 方法签名 -> 方法id
+     */
+    private volatile Map<String, Integer> methodIds = ImmutableMap.of();
+
+    /**
+     * 隔离线程池配置, 隔离线程池名称 -> 配置
+     */
+    private Map<String, BulkheadConfig> bulkheadConfigs = Collections.emptyMap();
+
+    /**
+     * 隔离线程池名称 -> 隔离线程池
+     */
+    private Map<String, Bulkhead> bulkheads = Maps.newConcurrentMap();
+
     private static final class RpcMappingHolder {
         private static final RpcMapping $ = new RpcMapping();
     }
 
-    public void addHandler(String key, Object value) {
+    public synchronized void addHandler(String key, Object value) {
         handlerMap.put(key, value);
+        this.exportMethods(key, value);
+    }
+
+    /**
+     * 为服务的每个方法分配id
+     *
+     * @param serviceName
+     * @param serviceBean
+     */
+    private void exportMethods(String serviceName, Object serviceBean) {
+        Method[] methods = this.exportedType(serviceName, serviceBean.getClass()).getMethods();
+        FastClass fastClass = FastClass.create(serviceBean.getClass());
+        ServiceMethod[] table = Arrays.copyOf(serviceMethods, serviceMethods.length + methods.length);
+        Map<String, Integer> ids = Maps.newHashMap(methodIds);
+        int id = serviceMethods.length;
+        for (Method method : methods) {
+            if (method.getDeclaringClass() == Object.class) {
+                continue;
+            }
+            String signature = ReflectUtils.signature(serviceName, method.getName(), method.getParameterTypes());
+            if (ids.containsKey(signature)) {
+                continue;
+            }
+            table[id] = new ServiceMethod(id, serviceName, serviceBean, method, fastClass.getMethod(method), signature, this.interceptorsFor(method));
+            table[id].setBulkhead(this.bulkheadFor(table[id]));
+            ids.put(signature, id);
+            id++;
+        }
+        this.serviceMethods = Arrays.copyOf(table, id);
+        this.methodIds = ImmutableMap.copyOf(ids);
+    }
+
+    /**
+     * 服务名与实现的接口一致时只导出接口方法, 否则导出实现类的公共方法
+     */
+    private Class<?> exportedType(String serviceName, Class<?> beanClass) {
+        for (Class<?> type = beanClass; null != type; type = type.getSuperclass()) {
+            for (Class<?> inte : type.getInterfaces()) {
+                if (inte.getName().equals(serviceName)) {
+                    return inte;
+                }
+            }
+        }
+        return beanClass;
+    }
+
+    /**
+     * 根据方法id获取方法, 不存在时返回null
+     *
+     * @param methodId
+     * @return
+     */
+    public ServiceMethod getServiceMethod(int methodId) {
+        ServiceMethod[] table = serviceMethods;
+        return methodId > 0 && methodId < table.length ? table[methodId] : null;
+    }
+
+    /**
+     * 根据类名和方法签名获取方法, 不存在时返回null
+     *
+     * @param className
+     * @param methodName
+     * @param parameterTypes
+     * @return
+     */
+    public ServiceMethod getServiceMethod(String className, String methodName, Class<?>[] parameterTypes) {
+        Integer methodId = methodIds.get(ReflectUtils.signature(className, methodName, parameterTypes));
+        return null == methodId ? null : serviceMethods[methodId];
+    }
+
+    public Map<String, Integer> getMethodIds() {
+        return methodIds;
     }
 
-    public void addInterceptors(List<RpcInteceptor> inteceptors) {
+    /**
+     * 输出导出的方法列表
+     */
+    public void report() {
+        ServiceMethod[] table = serviceMethods;
+        log.info("exported {} methods", table.length - 1);
+        for (int i = 1; i < table.length; i++) {
+            Bulkhead bulkhead = table[i].getBulkhead();
+            log.info("=> [{}] {}, interceptors: {}, bulkhead: {}", table[i].getId(), table[i].getSignature(), table[i].getInterceptors().length, null == bulkhead ? "-" : bulkhead.getName());
+        }
+    }
+
+    public synchronized void addInterceptors(List<RpcInteceptor> inteceptors) {
         if (null != inteceptors && !inteceptors.isEmpty()) {
             this.inteceptors.addAll(inteceptors);
+            ServiceMethod[] table = serviceMethods;
+            for (int i = 1; i < table.length; i++) {
+                table[i].setInterceptors(this.interceptorsFor(table[i].getMethod()));
+            }
+        }
+    }
+
+    /**
+     * 设置隔离线程池配置, 重新为已导出的方法分配隔离线程池
+     *
+     * @param configs 隔离线程池名称 -> 配置
+     */
+    public synchronized void setBulkheadConfigs(Map<String, BulkheadConfig> configs) {
+        this.bulkheadConfigs = null == configs ? Collections.emptyMap() : Maps.newHashMap(configs);
+        Map<String, Bulkhead> old = Maps.newHashMap(bulkheads);
+        bulkheads.clear();
+        ServiceMethod[] table = serviceMethods;
+        for (int i = 1; i < table.length; i++) {
+            table[i].setBulkhead(this.bulkheadFor(table[i]));
         }
+        old.values().forEach(Bulkhead::shutdown);
+    }
+
+    /**
+     * 查找方法所属的隔离线程池, 配置中的方法优先于服务, 配置优先于@RpcService注解
+     *
+     * @param serviceMethod
+     * @return 未划入隔离线程池时返回null
+     */
+    private Bulkhead bulkheadFor(ServiceMethod serviceMethod) {
+        String serviceName = serviceMethod.getServiceName();
+        String name = this.configuredBulkhead(serviceName + "." + serviceMethod.getMethod().getName());
+        if (null == name) {
+            name = this.configuredBulkhead(serviceName);
+        }
+        BulkheadConfig config = null == name ? null : bulkheadConfigs.get(name);
+        if (null == name) {
+            RpcService rpcService = serviceMethod.getServiceBean().getClass().getAnnotation(RpcService.class);
+            if (null == rpcService || StringUtils.isEmpty(rpcService.bulkhead())) {
+                return null;
+            }
+            name = rpcService.bulkhead();
+            config = bulkheadConfigs.get(name);
+            if (null == config) {
+                config = new BulkheadConfig(rpcService.threads() > 0 ? rpcService.threads() : new BulkheadConfig().getThreads(), rpcService.queues(), rpcService.maxConcurrency());
+            }
+        }
+        final BulkheadConfig bulkheadConfig = config;
+        return bulkheads.computeIfAbsent(name, key -> new Bulkhead(key, bulkheadConfig));
+    }
+
+    private String configuredBulkhead(String service) {
+        for (Map.Entry<String, BulkheadConfig> entry : bulkheadConfigs.entrySet()) {
+            List<String> services = entry.getValue().getServices();
+            if (null != services && services.contains(service)) {
+                return entry.getKey();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 生成作用于方法的拦截器数组
+     *
+     * @param method
+     * @return
+     */
+    private RpcInteceptor[] interceptorsFor(Method method) {
+        return inteceptors.stream().filter(inteceptor -> inteceptor.supports(method)).toArray(RpcInteceptor[]::new);
     }
 
     public static RpcMapping me() {
@@ -0,0 +1,85 @@
+package com.kongzhong.mrpc.server;
+
+import com.kongzhong.mrpc.annotation.RpcMethod;
+import com.kongzhong.mrpc.interceptor.RpcInteceptor;
+import lombok.Getter;
+import org.springframework.cglib.reflect.FastMethod;
+
+import java.lang.reflect.Method;
+
+/**
+ * 服务端导出的方法, id在握手时发布给客户端
+ * <p>
+ * 注册服务时生成FastMethod, 调用时不再反射查找方法
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+@Getter
+public class ServiceMethod {
+
+    private final int id;
+    private final String serviceName;
+    private final Object serviceBean;
+    private final Method method;
+    private final FastMethod fastMethod;
+    private final String signature;
+    private final Class<?>[] parameterTypes;
+
+    /**
+     * 方法上的@RpcMethod注解, 实现类优先于接口, 未标注时为null
+     */
+    private final RpcMethod rpcMethod;
+
+    /**
+     * 作用于该方法的拦截器, 拦截器变化时整体替换
+     */
+    private volatile RpcInteceptor[] interceptors;
+
+    /**
+     * 执行该方法的隔离线程池, 为null时使用公共线程池
+     */
+    private volatile Bulkhead bulkhead;
+
+    public ServiceMethod(int id, String serviceName, Object serviceBean, Method method, FastMethod fastMethod, String signature, RpcInteceptor[] interceptors) {
+        this.id = id;
+        this.serviceName = serviceName;
+        this.serviceBean = serviceBean;
+        this.method = method;
+        this.fastMethod = fastMethod;
+        this.signature = signature;
+        this.parameterTypes = method.getParameterTypes();
+        this.interceptors = interceptors;
+        this.rpcMethod = rpcMethodOf(serviceBean.getClass(), method);
+    }
+
+    private static RpcMethod rpcMethodOf(Class<?> beanClass, Method method) {
+        try {
+            RpcMethod rpcMethod = beanClass.getMethod(method.getName(), method.getParameterTypes()).getAnnotation(RpcMethod.class);
+            if (null != rpcMethod) {
+                return rpcMethod;
+            }
+        } catch (NoSuchMethodException e) {
+            // 导出的是接口方法, 实现类一定存在同签名的公共方法
+        }
+        return method.getAnnotation(RpcMethod.class);
+    }
+
+    /**
+     * 是否在IO线程中直接执行
+     *
+     * @return
+     */
+    public boolean isNonBlocking() {
+        return null != rpcMethod && rpcMethod.nonBlocking();
+    }
+
+    void setInterceptors(RpcInteceptor[] interceptors) {
+        this.interceptors = interceptors;
+    }
+
+    void setBulkhead(Bulkhead bulkhead) {
+        this.bulkhead = bulkhead;
+    }
+
+}
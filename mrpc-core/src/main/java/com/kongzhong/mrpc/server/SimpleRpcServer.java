@@ -3,29 +3,38 @@ package com.kongzhong.mrpc.server;
 import com.google.common.util.concurrent.*;
 import com.kongzhong.mrpc.common.thread.NamedThreadFactory;
 import com.kongzhong.mrpc.common.thread.RpcThreadPool;
+import com.kongzhong.mrpc.config.BulkheadConfig;
 import com.kongzhong.mrpc.config.DefaultConfig;
 import com.kongzhong.mrpc.config.NettyConfig;
 import com.kongzhong.mrpc.config.ServerConfig;
+import com.kongzhong.mrpc.enums.ExecutorEnum;
+import com.kongzhong.mrpc.exception.InitializeException;
+import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.interceptor.RpcInteceptor;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.registry.ServiceRegistry;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
+import com.kongzhong.mrpc.transport.FlushBatcher;
+import com.kongzhong.mrpc.transport.FlushMetrics;
+import com.kongzhong.mrpc.transport.SimpleResponseCallback;
+import com.kongzhong.mrpc.transport.EventLoopSupport;
 import com.kongzhong.mrpc.transport.TransferSelector;
 import com.kongzhong.mrpc.transport.http.HttpResponse;
+import com.kongzhong.mrpc.transport.tcp.TcpResponseCallback;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.InitializingBean;
 
-import java.nio.channels.spi.SelectorProvider;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 
 @Slf4j
 @Data
@@ -76,7 +85,35 @@ public class SimpleRpcServer {
      */
     protected NettyConfig nettyConfig;
 
-    protected static final ListeningExecutorService TPE = MoreExecutors.listeningDecorator((ThreadPoolExecutor) RpcThreadPool.getExecutor(16, -1));
+    /**
+     * 隔离线程池配置, 隔离线程池名称 -> 配置
+     */
+    protected Map<String, BulkheadConfig> bulkheads;
+
+    /**
+     * 业务执行方式, pool或virtual, 默认pool
+     */
+    protected String executor;
+
+    /**
+     * 服务权重, 默认100
+     */
+    protected Integer weight;
+
+    /**
+     * 业务线程池, 首个启动的服务按配置创建, 同一JVM内的服务共用
+     */
+    private static volatile ListeningExecutorService TPE;
+
+    /**
+     * 创建业务线程池时的配置, 用于检查同一JVM内的服务配置是否一致
+     */
+    private static String executorConfig;
+
+    /**
+     * 所有连接共享的响应flush统计
+     */
+    protected static final FlushMetrics FLUSH_METRICS = new FlushMetrics();
 
     public SimpleRpcServer() {
     }
@@ -103,21 +140,34 @@ public class SimpleRpcServer {
             serialize = DefaultConfig.serialize();
         }
 
+        ServerConfig.me().setFlushConsolidation(nettyConfig.isFlushConsolidation());
+        ServerConfig.me().setFlushBatchSize(nettyConfig.getFlushBatchSize());
+        ServerConfig.me().setCompressThreshold(nettyConfig.getCompressThreshold());
+        useExecutor(executor, nettyConfig.getBusinessThreads(), nettyConfig.getBusinessQueues());
+        rpcMapping.setBulkheadConfigs(bulkheads);
+
         transferSelector = new TransferSelector(serialize);
 
         ThreadFactory threadRpcFactory = new NamedThreadFactory("mrpc-server");
         int parallel = Runtime.getRuntime().availableProcessors() * 2;
 
-        EventLoopGroup boss = new NioEventLoopGroup();
-        EventLoopGroup worker = new NioEventLoopGroup(parallel, threadRpcFactory, SelectorProvider.provider());
+        // epoll下开启SO_REUSEPORT, 多个acceptor绑定同一端口分摊accept
+        boolean epoll = EventLoopSupport.useEpoll(nettyConfig.isEpoll());
+        int acceptors = epoll ? Math.max(1, nettyConfig.getAcceptors()) : 1;
+
+        EventLoopGroup boss = EventLoopSupport.newEventLoopGroup(epoll, acceptors, new NamedThreadFactory("mrpc-boss"));
+        EventLoopGroup worker = EventLoopSupport.newEventLoopGroup(epoll, parallel, threadRpcFactory);
 
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(boss, worker).channel(NioServerSocketChannel.class)
+            bootstrap.group(boss, worker).channel(EventLoopSupport.serverChannelClass(epoll))
                     .childHandler(transferSelector.getServerChannelHandler(transport))
                     .option(ChannelOption.SO_BACKLOG, nettyConfig.getBacklog())
                     .childOption(ChannelOption.SO_KEEPALIVE, nettyConfig.isKeepalive())
                     .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(nettyConfig.getLowWaterMark(), nettyConfig.getHighWaterMark()));
+            if (acceptors > 1) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
 
             String[] ipAddr = serverAddress.split(":");
             if (ipAddr.length == 2) {
@@ -130,8 +180,14 @@ public class SimpleRpcServer {
                 if (null != appId) {
                     ServerConfig.me().setAppId(appId);
                 }
+                if (null != weight) {
+                    ServerConfig.me().setWeight(weight);
+                }
 
                 ChannelFuture future = bootstrap.bind(host, port).sync();
+                for (int i = 1; i < acceptors; i++) {
+                    bootstrap.bind(host, port).sync();
+                }
 
                 if (null == serviceRegistry) {
                     serviceRegistry = DefaultConfig.registry();
@@ -143,7 +199,8 @@ public class SimpleRpcServer {
                     log.info("=> [{}] - [{}]", serviceName, serverAddress);
                 }
                 log.info("publish services finished!");
-                log.info("mrpc server start with => {}", port);
+                rpcMapping.report();
+                log.info("mrpc server start with => {}, transport [{}], acceptors [{}]", port, epoll ? "epoll" : "nio", acceptors);
 
                 future.channel().closeFuture().sync();
             } else {
@@ -174,15 +231,24 @@ public class SimpleRpcServer {
      * @param request
      * @param response
      */
-    public static void submit(Callable<Boolean> task, final ChannelHandlerContext ctx, final RpcRequest request, final RpcResponse response) {
+    public static void submit(TcpResponseCallback task, final ChannelHandlerContext ctx, final RpcRequest request, final RpcResponse response) {
 
         //提交任务, 异步获取结果
-        ListenableFuture<Boolean> listenableFuture = TPE.submit(task);
+        ListenableFuture<Boolean> listenableFuture = execute(task);
 
         //注册回调函数, 在task执行完之后 异步调用回调函数
         Futures.addCallback(listenableFuture, new FutureCallback<Boolean>() {
             @Override
             public void onSuccess(Boolean result) {
+                if (!result) {
+                    // 异步服务方法完成后再写出响应
+                    task.asyncResponse().thenRun(() -> this.onSuccess(Boolean.TRUE));
+                    return;
+                }
+                // 开启合并flush时由EventLoop批量写出
+                if (writeBatched(ctx, response)) {
+                    return;
+                }
                 //为返回msg回客户端添加一个监听器,当消息成功发送回客户端时被异步调用.
                 ctx.writeAndFlush(response).addListener(new ChannelFutureListener() {
                     /**
@@ -200,16 +266,19 @@ public class SimpleRpcServer {
             public void onFailure(Throwable t) {
                 log.error("", t);
             }
-        }, TPE);
+        }, MoreExecutors.directExecutor());
     }
 
-    public static void submit(Callable<HttpResponse> task, final ChannelHandlerContext ctx) {
+    public static void submit(SimpleResponseCallback<HttpResponse> task, final ChannelHandlerContext ctx) {
         //提交任务, 异步获取结果
-        ListenableFuture<HttpResponse> listenableFuture = TPE.submit(task);
+        ListenableFuture<HttpResponse> listenableFuture = execute(task);
         //注册回调函数, 在task执行完之后 异步调用回调函数
         Futures.addCallback(listenableFuture, new FutureCallback<HttpResponse>() {
             @Override
             public void onSuccess(HttpResponse response) {
+                if (writeBatched(ctx, response)) {
+                    return;
+                }
                 //为返回msg回客户端添加一个监听器,当消息成功发送回客户端时被异步调用.
                 ctx.writeAndFlush(response).addListener(new ChannelFutureListener() {
                     /**
@@ -229,7 +298,117 @@ public class SimpleRpcServer {
             public void onFailure(Throwable t) {
                 log.error("", t);
             }
-        }, TPE);
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * 在方法所属的隔离线程池中执行, 未划入隔离线程池时使用公共线程池.
+     * 线程池拒绝时直接返回服务繁忙响应.
+     *
+     * @param task
+     * @param <T>
+     * @return
+     */
+    private static <T> ListenableFuture<T> execute(SimpleResponseCallback<T> task) {
+        Bulkhead bulkhead = null;
+        try {
+            bulkhead = task.getServiceMethod().getBulkhead();
+        } catch (RpcException e) {
+            // 方法不存在, 在公共线程池中返回错误
+        }
+        try {
+            return null == bulkhead ? executor().submit(task) : bulkhead.submit(task);
+        } catch (RejectedExecutionException e) {
+            // 队列已满, 立即返回服务繁忙, 客户端可以马上切换节点
+            String reason = null == bulkhead ? "request rejected" : e.getMessage();
+            return Futures.immediateFuture(task.reject(new RejectedExecutionException("server busy, " + reason, e)));
+        }
+    }
+
+    /**
+     * 隔离线程池统计
+     *
+     * @return
+     */
+    public static Collection<Bulkhead> getBulkheads() {
+        return RpcMapping.me().getBulkheads().values();
+    }
+
+    /**
+     * 设置业务执行方式
+     * <p>
+     * pool模式下使用固定线程数、有界队列的线程池, 队列满时请求直接以服务繁忙响应.
+     * virtual模式下每个请求在一个虚拟线程中执行, 适合阻塞在JDBC或下游RPC上的服务, 并发上限可以通过隔离线程池的maxConcurrency控制.
+     * RpcContext在请求开始时设置、结束时移除, 始终和执行请求的线程绑定, 两种模式下行为一致.
+     * 当前JVM不支持虚拟线程时回退到线程池.
+     *
+     * @param executor pool或virtual, 为空时使用线程池
+     * @param threads  线程池线程数
+     * @param queues   线程池队列长度, 0为同步队列, 小于0为无界队列
+     */
+    public static synchronized void useExecutor(String executor, int threads, int queues) {
+        boolean virtual = null != executor && ExecutorEnum.VIRTUAL.name().equalsIgnoreCase(executor);
+        String config = virtual ? "virtual" : "pool, threads [" + Math.max(1, threads) + "], queues [" + queues + "]";
+        if (null != TPE) {
+            // 请求由静态的submit提交, 同一JVM内的服务只能共用一个业务线程池
+            if (!config.equals(executorConfig)) {
+                throw new InitializeException("mrpc server executor already configured as " + executorConfig + ", can not change to " + config);
+            }
+            return;
+        }
+        ExecutorService executorService = null;
+        if (virtual) {
+            executorService = RpcThreadPool.getVirtualExecutor("mrpc-server");
+            if (null == executorService) {
+                log.warn("virtual threads unsupported on java {}, fallback to thread pool", System.getProperty("java.version"));
+            } else {
+                log.info("mrpc server executor => virtual threads");
+            }
+        }
+        if (null == executorService) {
+            executorService = (ExecutorService) RpcThreadPool.getExecutor(Math.max(1, threads), queues);
+            log.info("mrpc server executor => pool, threads [{}], queues [{}]", Math.max(1, threads), queues);
+        }
+        TPE = MoreExecutors.listeningDecorator(executorService);
+        executorConfig = config;
+    }
+
+    /**
+     * 业务线程池, 服务启动前提交任务时按默认配置创建
+     *
+     * @return
+     */
+    private static ListeningExecutorService executor() {
+        if (null == TPE) {
+            NettyConfig defaults = DefaultConfig.nettyServerConfig();
+            useExecutor(null, defaults.getBusinessThreads(), defaults.getBusinessQueues());
+        }
+        return TPE;
+    }
+
+    /**
+     * 通过连接上的FlushBatcher写出响应
+     *
+     * @param ctx
+     * @param response
+     * @return 未开启合并flush时返回false
+     */
+    private static boolean writeBatched(ChannelHandlerContext ctx, Object response) {
+        FlushBatcher flushBatcher = ctx.channel().attr(FlushBatcher.KEY).get();
+        if (null == flushBatcher) {
+            return false;
+        }
+        flushBatcher.write(response);
+        return true;
+    }
+
+    /**
+     * 响应flush统计
+     *
+     * @return
+     */
+    public static FlushMetrics getFlushMetrics() {
+        return FLUSH_METRICS;
     }
 
     /**
@@ -0,0 +1,97 @@
+package com.kongzhong.mrpc.transport;
+
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * EventLoop与Channel类型选择
+ * <p>
+ * Linux下native epoll可用时使用epoll, 否则回退到JDK的NIO实现.
+ *
+ * @author biezhi
+ *         2017/5/23
+ */
+@Slf4j
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class EventLoopSupport {
+
+    private static final boolean EPOLL_AVAILABLE = checkEpoll();
+
+    private static boolean checkEpoll() {
+        try {
+            return Epoll.isAvailable();
+        } catch (Throwable t) {
+            return false;
+        }
+    }
+
+    /**
+     * native epoll是否可用
+     *
+     * @return
+     */
+    public static boolean isEpollAvailable() {
+        return EPOLL_AVAILABLE;
+    }
+
+    /**
+     * 根据配置判断是否使用epoll
+     *
+     * @param preferEpoll 是否优先使用epoll
+     * @return
+     */
+    public static boolean useEpoll(boolean preferEpoll) {
+        if (preferEpoll && !EPOLL_AVAILABLE && log.isDebugEnabled()) {
+            log.debug("native epoll unavailable, fallback to nio", Epoll.unavailabilityCause());
+        }
+        return preferEpoll && EPOLL_AVAILABLE;
+    }
+
+    public static EventLoopGroup newEventLoopGroup(boolean epoll, int threads, ThreadFactory threadFactory) {
+        if (epoll) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+        return new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    public static EventLoopGroup newEventLoopGroup(boolean epoll, int threads) {
+        if (epoll) {
+            return new EpollEventLoopGroup(threads);
+        }
+        return new NioEventLoopGroup(threads);
+    }
+
+    public static Class<? extends ServerChannel> serverChannelClass(boolean epoll) {
+        return epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * 获取与EventLoopGroup匹配的客户端Channel类型
+     * <p>
+     * 重连时传入的是单个EventLoop, EpollEventLoop不可见, 通过其所属的group判断.
+     *
+     * @param group
+     * @return
+     */
+    public static Class<? extends SocketChannel> socketChannelClass(EventLoopGroup group) {
+        if (group instanceof EventLoop && null != ((EventLoop) group).parent()) {
+            group = ((EventLoop) group).parent();
+        }
+        return group instanceof EpollEventLoopGroup ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+}
@@ -0,0 +1,103 @@
+package com.kongzhong.mrpc.transport;
+
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.util.AttributeKey;
+import io.netty.util.internal.PlatformDependent;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 合并写出与flush
+ * <p>
+ * 调用线程只把消息放入无锁队列, 每个批次只向EventLoop提交一次任务,
+ * 在任务中依次write并统一flush, 累计达到maxBatchSize条时提前flush一次.
+ * 并发的小消息可以共享TCP报文段, 减少系统调用和跨线程任务.
+ *
+ * @author biezhi
+ *         2017/5/23
+ */
+@Slf4j
+public class FlushBatcher {
+
+    /**
+     * 服务端连接上绑定的FlushBatcher
+     */
+    public static final AttributeKey<FlushBatcher> KEY = AttributeKey.valueOf("mrpc.flushBatcher");
+
+    /**
+     * 批量写出时没有调用方等待写出结果, 失败时记录日志
+     */
+    private static final ChannelFutureListener LOG_FAILURE = future -> {
+        if (!future.isSuccess()) {
+            log.error("write to {} failed", future.channel(), future.cause());
+        }
+    };
+
+    private final Channel channel;
+
+    private final int maxBatchSize;
+
+    private final Queue<Object> queue = PlatformDependent.newMpscQueue();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private final Runnable drainTask = this::drain;
+
+    private final FlushMetrics metrics;
+
+    private volatile long scheduledAt;
+
+    public FlushBatcher(Channel channel, int maxBatchSize) {
+        this(channel, maxBatchSize, new FlushMetrics());
+    }
+
+    public FlushBatcher(Channel channel, int maxBatchSize, FlushMetrics metrics) {
+        this.channel = channel;
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.metrics = metrics;
+    }
+
+    /**
+     * 写出消息, 可以在任意线程调用
+     *
+     * @param msg
+     */
+    public void write(Object msg) {
+        queue.offer(msg);
+        if (scheduled.compareAndSet(false, true)) {
+            scheduledAt = System.nanoTime();
+            channel.eventLoop().execute(drainTask);
+        }
+    }
+
+    private void drain() {
+        metrics.handoff(System.nanoTime() - scheduledAt);
+        // 先清除标记再读取队列, 之后入队的消息会触发新的任务
+        scheduled.set(false);
+        int batch = 0;
+        Object msg;
+        while ((msg = queue.poll()) != null) {
+            channel.write(msg).addListener(LOG_FAILURE);
+            if (++batch == maxBatchSize) {
+                flush(batch);
+                batch = 0;
+            }
+        }
+        if (batch > 0) {
+            flush(batch);
+        }
+    }
+
+    private void flush(int batch) {
+        channel.flush();
+        metrics.flushed(batch);
+    }
+
+    public FlushMetrics getMetrics() {
+        return metrics;
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.kongzhong.mrpc.transport;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 合并flush的统计, 可以由多个连接共享
+ *
+ * @author biezhi
+ *         2017/5/23
+ */
+public class FlushMetrics {
+
+    private final LongAdder messages = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder handoffs = new LongAdder();
+    private final LongAdder handoffNanos = new LongAdder();
+
+    void flushed(int batch) {
+        messages.add(batch);
+        flushes.increment();
+    }
+
+    void handoff(long nanos) {
+        handoffs.increment();
+        handoffNanos.add(nanos);
+    }
+
+    /**
+     * 已写出的消息数
+     */
+    public long getMessages() {
+        return messages.sum();
+    }
+
+    /**
+     * flush次数
+     */
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * 平均每次flush写出的消息数
+     */
+    public double getMessagesPerFlush() {
+        long flushCount = flushes.sum();
+        return flushCount == 0 ? 0 : (double) messages.sum() / flushCount;
+    }
+
+    /**
+     * 提交到EventLoop的任务数
+     */
+    public long getHandoffs() {
+        return handoffs.sum();
+    }
+
+    /**
+     * 任务从提交到在EventLoop中开始执行的平均耗时(纳秒)
+     */
+    public long getAvgHandoffNanos() {
+        long count = handoffs.sum();
+        return count == 0 ? 0 : handoffNanos.sum() / count;
+    }
+
+    @Override
+    public String toString() {
+        return "messages=" + getMessages() + ", flushes=" + getFlushes() + ", messagesPerFlush=" + String.format("%.2f", getMessagesPerFlush())
+                + ", handoffs=" + getHandoffs() + ", avgHandoffNanos=" + getAvgHandoffNanos();
+    }
+}
@@ -2,22 +2,33 @@ package com.kongzhong.mrpc.transport;
 
 import com.google.common.util.concurrent.ListeningExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
+import com.kongzhong.mrpc.client.PendingCalls;
 import com.kongzhong.mrpc.client.RpcFuture;
+import com.kongzhong.mrpc.client.RpcInvoker;
 import com.kongzhong.mrpc.client.cluster.Connections;
+import com.kongzhong.mrpc.common.thread.NamedThreadFactory;
 import com.kongzhong.mrpc.common.thread.RpcThreadPool;
+import com.kongzhong.mrpc.config.ClientConfig;
+import com.kongzhong.mrpc.config.DefaultConfig;
+import com.kongzhong.mrpc.exception.RpcConnectionException;
+import com.kongzhong.mrpc.exception.RpcTimeoutException;
 import com.kongzhong.mrpc.model.RpcRequest;
 import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.util.HashedWheelTimer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.SocketAddress;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.List;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 抽象客户端请求处理器
@@ -29,12 +40,65 @@ public abstract class SimpleClientHandler<T> extends SimpleChannelInboundHandler
 
     public static final Logger log = LoggerFactory.getLogger(SimpleClientHandler.class);
 
+    /**
+     * 所有连接共享的超时时间轮
+     */
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer(new NamedThreadFactory("mrpc-timeout", true), 10, TimeUnit.MILLISECONDS);
+
+    /**
+     * 所有连接的超时次数
+     */
+    private static final LongAdder TOTAL_TIMEOUTS = new LongAdder();
+
     private static ListeningExecutorService TPE = MoreExecutors.listeningDecorator((ThreadPoolExecutor) RpcThreadPool.getExecutor(16, -1));
 
-    protected Map<String, RpcFuture> mapCallBack = new ConcurrentHashMap<>();
+    /**
+     * 当前连接的请求id序列
+     */
+    private final AtomicLong requestId = new AtomicLong();
+
+    /**
+     * 等待响应的调用
+     */
+    protected final PendingCalls pendingCalls = new PendingCalls();
+
+    /**
+     * 当前连接上等待响应的请求数, 用于连接选择
+     */
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * 当前连接上超时的请求数
+     */
+    private final LongAdder timeouts = new LongAdder();
+
+    /**
+     * 响应延迟的指数加权移动平均(微秒), 还没有响应时为0
+     */
+    private volatile double latency;
+
+    /**
+     * 最近一次延迟样本的时间(System.nanoTime), 还没有样本时为0
+     */
+    private volatile long latencyTime;
+
+    /**
+     * 绑定当前连接的调用执行器, 每次调用复用
+     */
+    private final RpcInvoker<T> invoker = new RpcInvoker<>(this);
 
     protected volatile Channel channel;
 
+    /**
+     * 连接是否已经断开
+     */
+    private volatile boolean closed;
+
+    /**
+     * 合并flush, 未开启时为null
+     */
+    protected FlushBatcher flushBatcher;
+
     protected SocketAddress socketAddress;
 
     protected String serverAddress;
@@ -43,6 +107,10 @@ public abstract class SimpleClientHandler<T> extends SimpleChannelInboundHandler
     public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
         super.channelRegistered(ctx);
         this.channel = ctx.channel();
+        ClientConfig clientConfig = ClientConfig.me();
+        if (clientConfig.isFlushConsolidation()) {
+            this.flushBatcher = new FlushBatcher(channel, clientConfig.getFlushBatchSize());
+        }
     }
 
     @Override
@@ -55,9 +123,14 @@ public abstract class SimpleClientHandler<T> extends SimpleChannelInboundHandler
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
         super.channelInactive(ctx);
+        this.closed = true;
         Connections.me().remove(this);
+        this.failPending();
 
         log.debug("Channel inactive: {}", this.channel);
+        if (null != flushBatcher) {
+            log.debug("Channel {} flush metrics: {}", this.channel, flushBatcher.getMetrics());
+        }
         // 创建异步重连
 //        final EventLoop eventLoopGroup = this.channel.eventLoop();
 //        Set<String> referNames = Sets.newHashSet();
@@ -92,6 +165,170 @@ public abstract class SimpleClientHandler<T> extends SimpleChannelInboundHandler
 
     public abstract RpcFuture sendRequest(RpcRequest request);
 
+    /**
+     * 发送消息, 开启合并flush时由EventLoop批量写出
+     *
+     * @param msg
+     */
+    protected void send(Object msg) {
+        if (null != flushBatcher) {
+            flushBatcher.write(msg);
+        } else {
+            channel.writeAndFlush(msg);
+        }
+    }
+
+    /**
+     * 登记等待响应的调用
+     *
+     * @param requestId
+     * @param future
+     */
+    protected void addPending(long requestId, RpcFuture future) {
+        inFlight.incrementAndGet();
+        pendingCalls.put(requestId, future);
+        long timeout = future.getRequest().getTimeout();
+        if (timeout <= 0) {
+            timeout = TimeUnit.SECONDS.toMillis(DefaultConfig.serviceTimeout());
+        }
+        future.setTimeout(TIMER.newTimeout(t -> this.expire(requestId), timeout, TimeUnit.MILLISECONDS));
+        if (closed) {
+            // 与连接断开并发时, 断开后登记的调用不会再有响应
+            this.failPending();
+        }
+    }
+
+    /**
+     * 连接断开, 立即结束所有等待中的调用
+     */
+    private void failPending() {
+        List<RpcFuture> futures = pendingCalls.removeAll();
+        if (futures.isEmpty()) {
+            return;
+        }
+        inFlight.addAndGet(-futures.size());
+        RpcConnectionException cause = new RpcConnectionException("connection to " + serverAddress + " closed");
+        futures.forEach(future -> future.fail(cause));
+        log.debug("Channel {} closed, {} pending calls failed", this.channel, futures.size());
+    }
+
+    /**
+     * 超时未响应, 从等待表中移除
+     *
+     * @param requestId
+     */
+    private void expire(long requestId) {
+        RpcFuture future = this.removePending(requestId);
+        if (null != future) {
+            timeouts.increment();
+            TOTAL_TIMEOUTS.increment();
+            RpcRequest request = future.getRequest();
+            future.fail(new RpcTimeoutException("request [" + request.getClassName() + "." + request.getMethodName() + "] to " + serverAddress + " timeout"));
+        }
+    }
+
+    /**
+     * 移除等待响应的调用, 不存在时返回null
+     *
+     * @param requestId
+     * @return
+     */
+    protected RpcFuture removePending(long requestId) {
+        RpcFuture future = pendingCalls.remove(requestId);
+        if (null != future) {
+            inFlight.decrementAndGet();
+            this.recordLatency(future.elapsedNanos());
+        }
+        return future;
+    }
+
+    /**
+     * 更新响应延迟的移动平均, 超时的调用按等待的时间计入. 并发更新时允许丢失个别样本
+     * <p>
+     * 距离上一个样本越久, 新样本的权重越大, 空闲一段时间后的平均值主要反映最近的延迟
+     *
+     * @param nanos
+     */
+    private void recordLatency(long nanos) {
+        double micros = nanos / 1000.0;
+        long now = System.nanoTime();
+        long last = latencyTime;
+        if (last == 0) {
+            latency = micros;
+        } else {
+            double decay = Math.exp(-(now - last) / (DefaultConfig.latencyDecayMillis() * 1_000_000.0));
+            double alpha = Math.max(DefaultConfig.latencyEwmaAlpha(), 1 - decay);
+            double current = latency;
+            latency = current + (micros - current) * alpha;
+        }
+        latencyTime = now == 0 ? 1 : now;
+    }
+
+    /**
+     * 生成当前连接上单调递增的请求id
+     *
+     * @return
+     */
+    protected long nextRequestId() {
+        return requestId.incrementAndGet();
+    }
+
+    public RpcInvoker<T> getInvoker() {
+        return invoker;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * 响应延迟的移动平均(微秒), 按距离最近一次样本的时间衰减, 长时间空闲的连接重新获得流量
+     *
+     * @return
+     */
+    public double getLatency() {
+        long last = latencyTime;
+        if (last == 0) {
+            return 0;
+        }
+        long elapsed = System.nanoTime() - last;
+        return latency * Math.exp(-elapsed / (DefaultConfig.latencyDecayMillis() * 1_000_000.0));
+    }
+
+    /**
+     * 是否已经有延迟样本
+     *
+     * @return
+     */
+    public boolean isLatencySampled() {
+        return latencyTime != 0;
+    }
+
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * 所有连接的超时次数
+     *
+     * @return
+     */
+    public static long getTotalTimeouts() {
+        return TOTAL_TIMEOUTS.sum();
+    }
+
+    public boolean isActive() {
+        return null != channel && channel.isActive();
+    }
+
+    public boolean isWritable() {
+        return null != channel && channel.isWritable();
+    }
+
+    public FlushBatcher getFlushBatcher() {
+        return flushBatcher;
+    }
+
     public Channel getChannel() {
         return channel;
     }
@@ -9,7 +9,6 @@ import com.kongzhong.mrpc.transport.tcp.TcpClientChannelInitializer;
 import com.kongzhong.mrpc.transport.tcp.TcpClientHandler;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.*;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import lombok.extern.slf4j.Slf4j;
 
 import java.net.SocketAddress;
@@ -62,7 +61,7 @@ public class SimpleRequestCallback implements Callable<Boolean> {
 
     private void connectServer(Bootstrap b, EventLoopGroup eventLoopGroup) {
         b.group(eventLoopGroup)
-                .channel(NioSocketChannel.class)
+                .channel(EventLoopSupport.socketChannelClass(eventLoopGroup))
                 .option(ChannelOption.SO_KEEPALIVE, true);
         if (isHttp) {
             b.handler(new HttpClientChannelInitializer());
@@ -101,7 +100,7 @@ public class SimpleRequestCallback implements Callable<Boolean> {
                 loop.schedule(() -> {
                     if (retries.get() >= DEFAULT_TRCRY) {
                         future.channel().close();
-                        Connections.me().getAliveServers().remove(serverAddress.toString().substring(1));
+                        Connections.me().connectFailed(serverAddress.toString().substring(1));
                         log.warn("Client channel connect fail, closed.");
                     } else {
                         connectServer(new Bootstrap(), loop);
@@ -2,24 +2,22 @@ package com.kongzhong.mrpc.transport;
 
 import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.exception.ServiceException;
-import com.kongzhong.mrpc.interceptor.InterceptorChain;
 import com.kongzhong.mrpc.interceptor.Invocation;
 import com.kongzhong.mrpc.interceptor.RpcInteceptor;
 import com.kongzhong.mrpc.model.RpcContext;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.server.RpcMapping;
-import com.kongzhong.mrpc.utils.ReflectUtils;
+import com.kongzhong.mrpc.server.ServiceMethod;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.cglib.reflect.FastClass;
 import org.springframework.cglib.reflect.FastMethod;
 
 import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * 抽象响应回调处理
@@ -30,28 +28,97 @@ public abstract class SimpleResponseCallback<T> implements Callable<T> {
 
     public static final Logger log = LoggerFactory.getLogger(SimpleResponseCallback.class);
 
+    private static final LongAdder EXPIRED = new LongAdder();
+
     protected Map<String, Object> handlerMap;
-    protected List<RpcInteceptor> interceptors;
-    protected InterceptorChain interceptorChain = new InterceptorChain();
     protected RpcRequest request;
     protected RpcResponse response;
-    protected boolean hasInterceptors;
+    protected ServiceMethod serviceMethod;
+
+    /**
+     * 异步服务方法返回的CompletionStage, 同步方法为null
+     */
+    protected CompletionStage<?> asyncResult;
 
     public SimpleResponseCallback(RpcRequest request, RpcResponse response, Map<String, Object> handlerMap) {
         this.request = request;
         this.response = response;
         this.handlerMap = handlerMap;
-        this.interceptors = RpcMapping.me().getInteceptors();
-        if (null != interceptors && !interceptors.isEmpty()) {
-            hasInterceptors = true;
-            int pos = interceptors.size();
-            for (RpcInteceptor rpcInteceptor : interceptors) {
-                interceptorChain.addLast("mrpc:server:interceptor:" + (pos--), rpcInteceptor);
+    }
+
+    public abstract T call() throws Exception;
+
+    /**
+     * call执行后, 异步服务方法返回的CompletionStage, 同步方法返回null
+     *
+     * @return
+     */
+    public CompletionStage<?> getAsyncResult() {
+        return asyncResult;
+    }
+
+    /**
+     * 请求未能提交执行时生成的响应
+     *
+     * @param cause
+     * @return
+     */
+    public abstract T reject(Throwable cause);
+
+    /**
+     * 查找请求的服务方法, 结果在回调内缓存
+     *
+     * @return
+     * @throws RpcException 服务方法不存在
+     */
+    public ServiceMethod getServiceMethod() {
+        if (null != serviceMethod) {
+            return serviceMethod;
+        }
+        if (request.getMethodId() > 0) {
+            // 按握手时分配的方法id查找, 并回填类名和方法信息供拦截器使用
+            serviceMethod = RpcMapping.me().getServiceMethod(request.getMethodId());
+            if (null == serviceMethod) {
+                throw new RpcException("not found method id [" + request.getMethodId() + "]");
+            }
+            request.setClassName(serviceMethod.getServiceName());
+            request.setMethodName(serviceMethod.getMethod().getName());
+            request.setParameterTypes(serviceMethod.getParameterTypes());
+        } else {
+            serviceMethod = RpcMapping.me().getServiceMethod(request.getClassName(), request.getMethodName(), request.getParameterTypes());
+            if (null == serviceMethod) {
+                throw new RpcException("not found method [" + request.getClassName() + "." + request.getMethodName() + "]");
             }
         }
+        return serviceMethod;
     }
 
-    public abstract T call() throws Exception;
+    /**
+     * 请求是否已经超过截止时间, 超过时计数
+     *
+     * @return
+     */
+    protected boolean isExpired() {
+        if (request.getDeadline() > 0 && System.currentTimeMillis() >= request.getDeadline()) {
+            EXPIRED.increment();
+            log.debug("request [{}] expired before execution", request.getRequestId());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 因超过截止时间而未执行的请求数
+     *
+     * @return
+     */
+    public static long getExpiredCount() {
+        return EXPIRED.sum();
+    }
+
+    public RpcRequest getRequest() {
+        return request;
+    }
 
     /**
      * 执行请求的方法
@@ -63,25 +130,17 @@ public abstract class SimpleResponseCallback<T> implements Callable<T> {
     protected Object handle(RpcRequest request) throws Throwable {
         try {
             RpcContext.set();
-
-            String className = request.getClassName();
-            Object serviceBean = handlerMap.get(className);
-
-            if (null == serviceBean) {
-                throw new RpcException("not found service [" + className + "]");
+            if (request.getDeadline() > 0) {
+                RpcContext.deadline(request.getDeadline());
             }
 
-            Class<?> serviceClass = serviceBean.getClass();
-            String methodName = request.getMethodName();
-            Class<?>[] parameterTypes = request.getParameterTypes();
+            ServiceMethod serviceMethod = this.getServiceMethod();
+            Object serviceBean = serviceMethod.getServiceBean();
+            FastMethod serviceFastMethod = serviceMethod.getFastMethod();
             Object[] parameters = request.getParameters();
 
-            Method method = ReflectUtils.method(serviceClass, methodName, parameterTypes);
-
-            FastClass serviceFastClass = FastClass.create(serviceClass);
-            FastMethod serviceFastMethod = serviceFastClass.getMethod(methodName, parameterTypes);
-
-            if (!hasInterceptors) {
+            RpcInteceptor[] interceptors = serviceMethod.getInterceptors();
+            if (interceptors.length == 0) {
                 return serviceFastMethod.invoke(serviceBean, parameters);
             }
 
@@ -1,5 +1,7 @@
 package com.kongzhong.mrpc.transport;
 
+import com.kongzhong.mrpc.config.ServerConfig;
+import com.kongzhong.mrpc.server.SimpleRpcServer;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
 import org.slf4j.Logger;
@@ -23,6 +25,15 @@ public abstract class SimpleServerHandler<T> extends SimpleChannelInboundHandler
         this.handlerMap = handlerMap;
     }
 
+    @Override
+    public void channelRegistered(ChannelHandlerContext ctx) throws Exception {
+        super.channelRegistered(ctx);
+        ServerConfig serverConfig = ServerConfig.me();
+        if (serverConfig.isFlushConsolidation()) {
+            ctx.channel().attr(FlushBatcher.KEY).set(new FlushBatcher(ctx.channel(), serverConfig.getFlushBatchSize(), SimpleRpcServer.getFlushMetrics()));
+        }
+    }
+
     public abstract void channelRead0(ChannelHandlerContext ctx, T msg) throws Exception;
 
     public abstract void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception;
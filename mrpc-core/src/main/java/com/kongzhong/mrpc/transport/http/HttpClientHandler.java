@@ -3,6 +3,7 @@ package com.kongzhong.mrpc.transport.http;
 import com.kongzhong.mrpc.client.RpcFuture;
 import com.kongzhong.mrpc.exception.HttpException;
 import com.kongzhong.mrpc.model.RequestBody;
+import com.kongzhong.mrpc.model.ResponseBody;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.transport.SimpleClientHandler;
@@ -36,11 +37,12 @@ public class HttpClientHandler extends SimpleClientHandler<FullHttpResponse> {
     @Override
     public RpcFuture sendRequest(RpcRequest rpcRequest) {
 
+        rpcRequest.setRequestId(nextRequestId());
         RpcFuture rpcFuture = new RpcFuture(rpcRequest);
-        mapCallBack.put(rpcRequest.getRequestId(), rpcFuture);
+        addPending(rpcRequest.getRequestId(), rpcFuture);
 
         RequestBody requestBody = new RequestBody();
-        requestBody.setRequestId(rpcRequest.getRequestId());
+        requestBody.setRequestId(String.valueOf(rpcRequest.getRequestId()));
         requestBody.setService(rpcRequest.getClassName());
         requestBody.setMethod(rpcRequest.getMethodName());
         requestBody.setParameters(Arrays.asList(rpcRequest.getParameters()));
@@ -66,7 +68,7 @@ public class HttpClientHandler extends SimpleClientHandler<FullHttpResponse> {
             req.headers().set(HttpHeaders.Names.CONTENT_LENGTH, bbuf.readableBytes());
             req.content().clear().writeBytes(bbuf);
 
-            channel.writeAndFlush(req);
+            send(req);
         } catch (Exception e) {
             log.error("", e);
         }
@@ -86,7 +88,8 @@ public class HttpClientHandler extends SimpleClientHandler<FullHttpResponse> {
             if (StringUtils.isEmpty(body)) {
                 return;
             }
-            RpcResponse rpcResponse = JSONUtils.parseObject(body, RpcResponse.class);
+            ResponseBody responseBody = JSONUtils.parseObject(body, ResponseBody.class);
+            RpcResponse rpcResponse = responseBody.toRpcResponse();
             if (rpcResponse.getSuccess()) {
                 log.debug("response: {}", body);
                 Object result = rpcResponse.getResult();
@@ -95,9 +98,10 @@ public class HttpClientHandler extends SimpleClientHandler<FullHttpResponse> {
                     rpcResponse.setResult(JSONUtils.parseObject(JSONUtils.toJSONString(result), re));
                 }
             }
-            RpcFuture rpcFuture = mapCallBack.get(rpcResponse.getRequestId());
+            // 请求id由当前连接生成, 非数字的id不是本客户端的请求
+            long requestId = StringUtils.toLong(responseBody.getRequestId(), 0);
+            RpcFuture rpcFuture = requestId > 0 ? removePending(requestId) : null;
             if (rpcFuture != null) {
-                mapCallBack.remove(rpcResponse.getRequestId());
                 rpcFuture.done(rpcResponse);
             }
         } catch (Exception e) {
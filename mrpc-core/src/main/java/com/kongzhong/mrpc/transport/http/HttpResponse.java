@@ -14,6 +14,9 @@ import io.netty.handler.codec.http.HttpVersion;
  */
 public class HttpResponse extends DefaultFullHttpResponse {
 
+    /**
+     * 客户端传入的请求id, 原样写回响应
+     */
     private String requestId;
 
     public HttpResponse(HttpVersion version, HttpResponseStatus status) {
@@ -3,6 +3,7 @@ package com.kongzhong.mrpc.transport.http;
 import com.google.common.base.Throwables;
 import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.exception.ServiceException;
+import com.kongzhong.mrpc.model.ResponseBody;
 import com.kongzhong.mrpc.model.RpcContext;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
@@ -17,6 +18,8 @@ import org.slf4j.LoggerFactory;
 import java.lang.reflect.InvocationTargetException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Http响应回调处理
@@ -35,10 +38,15 @@ public class HttpResponseCallback extends SimpleResponseCallback<HttpResponse> {
     @Override
     public HttpResponse call() throws Exception {
         RpcResponse rpcResponse = new RpcResponse();
-        rpcResponse.setRequestId(request.getRequestId());
-        httpResponse.setRequestId(request.getRequestId());
         try {
             Object result = handle(request);
+            if (result instanceof CompletionStage) {
+                try {
+                    result = ((CompletionStage<?>) result).toCompletableFuture().get();
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
             rpcResponse.setResult(result);
             if (null != request.getReturnType()) {
                 rpcResponse.setReturnType(request.getReturnType().getName());
@@ -50,12 +58,24 @@ public class HttpResponseCallback extends SimpleResponseCallback<HttpResponse> {
             log.error("rpc method invoke error", t);
         } finally {
             RpcContext.remove();
-            String body = JSONUtils.toJSONString(rpcResponse);
-            ByteBuf bbuf = Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
-            httpResponse.headers().set(HttpHeaders.Names.CONTENT_LENGTH, bbuf.readableBytes());
-            httpResponse.content().clear().writeBytes(bbuf);
-            return httpResponse;
+            return this.write(rpcResponse);
         }
     }
 
+    @Override
+    public HttpResponse reject(Throwable cause) {
+        RpcResponse rpcResponse = new RpcResponse();
+        rpcResponse.setException(cause.getMessage());
+        rpcResponse.setCode(RpcResponse.CODE_BUSY);
+        return this.write(rpcResponse);
+    }
+
+    private HttpResponse write(RpcResponse rpcResponse) {
+        String body = JSONUtils.toJSONString(ResponseBody.of(httpResponse.getRequestId(), rpcResponse));
+        ByteBuf bbuf = Unpooled.copiedBuffer(body, StandardCharsets.UTF_8);
+        httpResponse.headers().set(HttpHeaders.Names.CONTENT_LENGTH, bbuf.readableBytes());
+        httpResponse.content().clear().writeBytes(bbuf);
+        return httpResponse;
+    }
+
 }
\ No newline at end of file
@@ -102,6 +102,8 @@ public class HttpServerHandler extends SimpleServerHandler<FullHttpRequest> {
         RpcRequest rpcRequest = parseParams(ctx, requestBody, bean.getClass());
 
         HttpResponse httpResponse = new HttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer("", CharsetUtil.UTF_8));
+        // http请求id只用于客户端匹配响应, 不转换为协议帧头中的数字id
+        httpResponse.setRequestId(null != requestBody.getRequestId() ? requestBody.getRequestId() : StringUtils.getUUID());
         httpResponse.headers().set(HttpHeaders.Names.CONTENT_TYPE, MediaType.JSON.toString());
         httpResponse.headers().set(HttpHeaders.Names.CONTENT_LENGTH, httpResponse.content().readableBytes());
         httpResponse.headers().set(HttpHeaders.Names.ACCESS_CONTROL_ALLOW_ORIGIN, "*");
@@ -162,13 +164,11 @@ public class HttpServerHandler extends SimpleServerHandler<FullHttpRequest> {
         }
 
         // 构造请求
-        String requestId = null != requestBody.getRequestId() ? requestBody.getRequestId() : StringUtils.getUUID();
-        return getRpcRequest(requestId, serviceName, method, args);
+        return getRpcRequest(serviceName, method, args);
     }
 
-    private RpcRequest getRpcRequest(String requestId, String serviceName, Method method, Object[] paramters) {
+    private RpcRequest getRpcRequest(String serviceName, Method method, Object[] paramters) {
         RpcRequest request = new RpcRequest();
-        request.setRequestId(requestId);
         request.setClassName(serviceName);
         request.setMethodName(method.getName());
         request.setParameterTypes(method.getParameterTypes());
@@ -1,14 +1,14 @@
 package com.kongzhong.mrpc.transport.tcp;
 
+import com.kongzhong.mrpc.codec.RpcDecoder;
 import com.kongzhong.mrpc.codec.RpcEncoder;
+import com.kongzhong.mrpc.codec.RpcProtocol;
 import com.kongzhong.mrpc.config.ClientConfig;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
-import com.kongzhong.mrpc.codec.RpcDecoder;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 
 /**
  * tcp客户端ChannelInitializer
@@ -26,8 +26,8 @@ public class TcpClientChannelInitializer extends ChannelInitializer<SocketChanne
     @Override
     protected void initChannel(SocketChannel sc) throws Exception {
         sc.pipeline()
-                .addLast(new RpcEncoder(rpcSerialize, RpcRequest.class))
-                .addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, RpcSerialize.MESSAGE_LENGTH, 0, 0))
+                .addLast(new RpcEncoder(rpcSerialize, RpcRequest.class, ClientConfig.me().getCompressThreshold()))
+                .addLast(RpcProtocol.newFrameDecoder())
                 .addLast(new RpcDecoder(rpcSerialize, RpcResponse.class))
                 .addLast(new TcpClientHandler());
     }
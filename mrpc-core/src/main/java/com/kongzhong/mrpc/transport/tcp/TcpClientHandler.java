@@ -1,14 +1,20 @@
 package com.kongzhong.mrpc.transport.tcp;
 
 import com.kongzhong.mrpc.client.RpcFuture;
+import com.kongzhong.mrpc.codec.RpcEncoder;
+import com.kongzhong.mrpc.codec.RpcHandshake;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.transport.SimpleClientHandler;
+import com.kongzhong.mrpc.utils.ReflectUtils;
 import io.netty.channel.ChannelHandlerContext;
 import lombok.extern.slf4j.Slf4j;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Collections;
+import java.util.Map;
+
 /**
  * @author biezhi
  *         2017/4/19
@@ -16,6 +22,30 @@ import org.slf4j.LoggerFactory;
 @Slf4j
 public class TcpClientHandler extends SimpleClientHandler<RpcResponse> {
 
+    /**
+     * 服务端在握手时发布的方法id, 握手完成前为空, 请求仍按类名和方法签名发送
+     */
+    private volatile Map<String, Integer> methodIds = Collections.emptyMap();
+
+    @Override
+    public void channelActive(ChannelHandlerContext ctx) throws Exception {
+        super.channelActive(ctx);
+        // 声明接收压缩的消息, 服务端确认后再开启请求压缩
+        ctx.writeAndFlush(new RpcHandshake(true));
+    }
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof RpcHandshake) {
+            RpcHandshake handshake = (RpcHandshake) msg;
+            this.methodIds = handshake.getMethodIds();
+            ctx.pipeline().get(RpcEncoder.class).setCompression(handshake.isCompression());
+            log.debug("handshake with {}, {} methods", ctx.channel().remoteAddress(), methodIds.size());
+            return;
+        }
+        super.channelRead(ctx, msg);
+    }
+
     /**
      * 每次客户端发送一次RPC请求的 时候调用.
      *
@@ -23,22 +53,49 @@ public class TcpClientHandler extends SimpleClientHandler<RpcResponse> {
      * @return
      */
     public RpcFuture sendRequest(RpcRequest request) {
+        request.setRequestId(nextRequestId());
         RpcFuture rpcFuture = new RpcFuture(request);
-        mapCallBack.put(request.getRequestId(), rpcFuture);
+        addPending(request.getRequestId(), rpcFuture);
         log.debug("request: {}", request);
-        channel.writeAndFlush(request);
+        send(this.compact(request));
         return rpcFuture;
     }
 
+    /**
+     * 服务端发布了方法id时, 只发送方法id和参数
+     * <p>
+     * 原请求可能被重试到其他连接, 这里不修改原请求
+     *
+     * @param request
+     * @return
+     */
+    private RpcRequest compact(RpcRequest request) {
+        if (methodIds.isEmpty()) {
+            return request;
+        }
+        String signature = request.getSignature();
+        if (null == signature) {
+            signature = ReflectUtils.signature(request.getClassName(), request.getMethodName(), request.getParameterTypes());
+        }
+        Integer methodId = methodIds.get(signature);
+        if (null == methodId) {
+            return request;
+        }
+        RpcRequest compact = new RpcRequest();
+        compact.setRequestId(request.getRequestId());
+        compact.setMethodId(methodId);
+        compact.setParameters(request.getParameters());
+        compact.setTimeout(request.getTimeout());
+        return compact;
+    }
+
     @Override
     protected void channelRead0(ChannelHandlerContext ctx, RpcResponse response) throws Exception {
         if (response.getSuccess()) {
             log.debug("response: {}", response);
         }
-        String messageId = response.getRequestId();
-        RpcFuture rpcFuture = mapCallBack.get(messageId);
+        RpcFuture rpcFuture = removePending(response.getRequestId());
         if (rpcFuture != null) {
-            mapCallBack.remove(messageId);
             rpcFuture.done(response);
         }
     }
@@ -13,6 +13,8 @@ import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.InvocationTargetException;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Tcp响应回调处理
@@ -29,7 +31,18 @@ public class TcpResponseCallback extends SimpleResponseCallback<Boolean> {
     public Boolean call() throws Exception {
         try {
             response.setRequestId(request.getRequestId());
+            if (this.isExpired()) {
+                // 客户端已经不再等待, 不执行业务逻辑
+                response.setException("deadline exceeded before execution");
+                response.setCode(RpcResponse.CODE_DEADLINE_EXCEEDED);
+                return Boolean.TRUE;
+            }
             Object result = handle(request);
+            if (result instanceof CompletionStage) {
+                // 异步服务方法, 完成后再填充响应
+                this.asyncResult = (CompletionStage<?>) result;
+                return Boolean.FALSE;
+            }
             response.setResult(result);
             response.setSuccess(true);
             return Boolean.TRUE;
@@ -43,4 +56,31 @@ public class TcpResponseCallback extends SimpleResponseCallback<Boolean> {
         }
     }
 
-}
\ No newline at end of file
+    /**
+     * call返回false时, 服务方法返回的CompletionStage完成后填充响应
+     *
+     * @return
+     */
+    public CompletionStage<Boolean> asyncResponse() {
+        return asyncResult.handle((result, e) -> {
+            if (null == e) {
+                response.setResult(result);
+                response.setSuccess(true);
+            } else {
+                Throwable t = e instanceof CompletionException && null != e.getCause() ? e.getCause() : e;
+                response.setException(Throwables.getStackTraceAsString(t));
+                log.error("rpc method invoke error", t);
+            }
+            return Boolean.TRUE;
+        });
+    }
+
+    @Override
+    public Boolean reject(Throwable cause) {
+        response.setRequestId(request.getRequestId());
+        response.setException(cause.getMessage());
+        response.setCode(RpcResponse.CODE_BUSY);
+        return Boolean.TRUE;
+    }
+
+}
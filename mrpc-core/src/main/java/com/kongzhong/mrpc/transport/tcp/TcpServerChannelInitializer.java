@@ -2,13 +2,14 @@ package com.kongzhong.mrpc.transport.tcp;
 
 import com.kongzhong.mrpc.codec.RpcDecoder;
 import com.kongzhong.mrpc.codec.RpcEncoder;
+import com.kongzhong.mrpc.codec.RpcProtocol;
+import com.kongzhong.mrpc.config.ServerConfig;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
 import com.kongzhong.mrpc.server.RpcMapping;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 
 /**
  * Tcp服务端ChannelInitializer
@@ -24,9 +25,9 @@ public class TcpServerChannelInitializer extends ChannelInitializer<SocketChanne
     @Override
     protected void initChannel(SocketChannel socketChannel) throws Exception {
         socketChannel.pipeline()
-                .addLast(new LengthFieldBasedFrameDecoder(Integer.MAX_VALUE, 0, RpcSerialize.MESSAGE_LENGTH, 0, 0))
+                .addLast(RpcProtocol.newFrameDecoder())
                 .addLast(new RpcDecoder(rpcSerialize, RpcRequest.class))
-                .addLast(new RpcEncoder(rpcSerialize, RpcResponse.class))
+                .addLast(new RpcEncoder(rpcSerialize, RpcResponse.class, ServerConfig.me().getCompressThreshold()))
                 .addLast(new TcpServerHandler(RpcMapping.me().getHandlerMap()));
     }
 }
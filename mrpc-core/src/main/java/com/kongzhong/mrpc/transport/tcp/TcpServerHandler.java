@@ -1,7 +1,11 @@
 package com.kongzhong.mrpc.transport.tcp;
 
+import com.kongzhong.mrpc.codec.RpcEncoder;
+import com.kongzhong.mrpc.codec.RpcHandshake;
+import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.model.RpcRequest;
 import com.kongzhong.mrpc.model.RpcResponse;
+import com.kongzhong.mrpc.server.RpcMapping;
 import com.kongzhong.mrpc.server.RpcServer;
 import com.kongzhong.mrpc.transport.SimpleServerHandler;
 import io.netty.channel.ChannelHandlerContext;
@@ -18,19 +22,68 @@ import java.util.Map;
 @Slf4j
 public class TcpServerHandler extends SimpleServerHandler<RpcRequest> {
 
+    /**
+     * 本次读取中是否有在IO线程直接写出的响应
+     */
+    private boolean needsFlush;
+
     public TcpServerHandler(Map<String, Object> handlerMap) {
         super(handlerMap);
     }
 
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (msg instanceof RpcHandshake) {
+            // 客户端声明接收压缩时开启响应压缩并确认, 回复导出方法的id
+            boolean compression = ((RpcHandshake) msg).isCompression();
+            ctx.pipeline().get(RpcEncoder.class).setCompression(compression);
+            ctx.writeAndFlush(new RpcHandshake(RpcMapping.me().getMethodIds(), compression));
+            return;
+        }
+        super.channelRead(ctx, msg);
+    }
+
     @Override
     public void channelRead0(ChannelHandlerContext ctx, RpcRequest request) throws Exception {
         log.debug("tcp server request: {}", request);
+        if (request.getTimeout() > 0) {
+            // 按收到请求的时间换算截止时间, 不依赖两端时钟一致
+            request.setDeadline(System.currentTimeMillis() + request.getTimeout());
+        }
         RpcResponse response = new RpcResponse();
         TcpResponseCallback tcpResponseCallback = new TcpResponseCallback(request, response, handlerMap);
+        if (this.isNonBlocking(tcpResponseCallback)) {
+            // 非阻塞方法直接在IO线程执行, 读取结束时统一flush
+            if (!tcpResponseCallback.call()) {
+                tcpResponseCallback.asyncResponse().thenRun(() -> ctx.writeAndFlush(response));
+                return;
+            }
+            ctx.write(response);
+            needsFlush = true;
+            return;
+        }
         //非阻塞nio线程，复杂的业务逻辑丢给专门的线程池
         RpcServer.submit(tcpResponseCallback, ctx, request, response);
     }
 
+    @Override
+    public void channelReadComplete(ChannelHandlerContext ctx) throws Exception {
+        if (needsFlush) {
+            needsFlush = false;
+            ctx.flush();
+        }
+        super.channelReadComplete(ctx);
+    }
+
+    private boolean isNonBlocking(TcpResponseCallback callback) {
+        try {
+            return callback.getServiceMethod().isNonBlocking();
+        } catch (RpcException e) {
+            // 方法不存在, 交给业务线程返回错误
+            return false;
+        }
+    }
+
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
         log.error("Tcp server handler error", cause);
@@ -0,0 +1,138 @@
+package com.kongzhong.mrpc.client;
+
+import com.kongzhong.mrpc.model.RpcRequest;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * 等待响应调用表测试
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class PendingCallsTest {
+
+    private static RpcFuture future() {
+        return new RpcFuture(new RpcRequest());
+    }
+
+    @Test
+    public void testPutAndRemove() {
+        PendingCalls calls = new PendingCalls();
+        RpcFuture future = future();
+        calls.put(1L, future);
+        assertEquals(1, calls.size());
+        assertSame(future, calls.remove(1L));
+        assertNull(calls.remove(1L));
+        assertEquals(0, calls.size());
+    }
+
+    @Test
+    public void testPutReplacesSameKey() {
+        PendingCalls calls = new PendingCalls();
+        RpcFuture first = future();
+        RpcFuture second = future();
+        calls.put(7L, first);
+        calls.put(7L, second);
+        assertEquals(1, calls.size());
+        assertSame(second, calls.remove(7L));
+    }
+
+    /**
+     * 同一分段内大量key冲突并扩容后, 删除中间元素不能断开后续的探测链
+     */
+    @Test
+    public void testRemoveKeepsProbeChain() {
+        PendingCalls calls = new PendingCalls();
+        Map<Long, RpcFuture> expected = new HashMap<>();
+        // 步长16使所有key落在同一分段, 超过初始容量触发扩容
+        for (long id = 16; id <= 16 * 500; id += 16) {
+            RpcFuture future = future();
+            calls.put(id, future);
+            expected.put(id, future);
+        }
+        // 删除一半, 剩余的仍然能找到
+        for (long id = 16; id <= 16 * 500; id += 32) {
+            assertSame(expected.remove(id), calls.remove(id));
+        }
+        assertEquals(expected.size(), calls.size());
+        expected.forEach((id, future) -> assertSame(future, calls.remove(id)));
+        assertEquals(0, calls.size());
+    }
+
+    @Test
+    public void testRandomOperationsMatchHashMap() {
+        PendingCalls calls = new PendingCalls();
+        Map<Long, RpcFuture> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long id = random.nextInt(2048);
+            if (random.nextBoolean()) {
+                RpcFuture future = future();
+                calls.put(id, future);
+                expected.put(id, future);
+            } else {
+                assertSame("request " + id, expected.remove(id), calls.remove(id));
+            }
+        }
+        assertEquals(expected.size(), calls.size());
+    }
+
+    @Test
+    public void testRemoveAll() {
+        PendingCalls calls = new PendingCalls();
+        for (long id = 1; id <= 1000; id++) {
+            calls.put(id, future());
+        }
+        List<RpcFuture> futures = calls.removeAll();
+        assertEquals(1000, futures.size());
+        assertEquals(0, calls.size());
+        assertNull(calls.remove(1L));
+        // 清空后仍然可以继续使用
+        RpcFuture future = future();
+        calls.put(1L, future);
+        assertSame(future, calls.remove(1L));
+    }
+
+    @Test
+    public void testConcurrentPutAndRemove() throws Exception {
+        PendingCalls calls = new PendingCalls();
+        int threads = 8;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch latch = new CountDownLatch(threads);
+        AtomicInteger missing = new AtomicInteger();
+        for (int t = 0; t < threads; t++) {
+            long base = (long) t * perThread;
+            executor.execute(() -> {
+                try {
+                    for (long id = base; id < base + perThread; id++) {
+                        RpcFuture future = future();
+                        calls.put(id, future);
+                        if (calls.remove(id) != future) {
+                            missing.incrementAndGet();
+                        }
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        assertTrue(latch.await(30, TimeUnit.SECONDS));
+        executor.shutdown();
+        assertEquals(0, missing.get());
+        assertEquals(0, calls.size());
+    }
+
+}
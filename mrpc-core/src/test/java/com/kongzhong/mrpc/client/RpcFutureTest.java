@@ -0,0 +1,116 @@
+package com.kongzhong.mrpc.client;
+
+import com.kongzhong.mrpc.exception.RpcTimeoutException;
+import com.kongzhong.mrpc.exception.ServerBusyException;
+import com.kongzhong.mrpc.exception.ServiceException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 等待响应的调用测试
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class RpcFutureTest {
+
+    private final HashedWheelTimer timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS);
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    private static RpcResponse response(Object result, int code, String exception) {
+        RpcResponse response = new RpcResponse();
+        response.setResult(result);
+        response.setCode(code);
+        response.setException(exception);
+        return response;
+    }
+
+    @Test
+    public void testDone() throws Exception {
+        RpcFuture future = new RpcFuture(new RpcRequest());
+        future.done(response("hello", 0, null));
+        assertTrue(future.isDone());
+        assertEquals("hello", future.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = ServiceException.class)
+    public void testServiceException() throws Exception {
+        RpcFuture future = new RpcFuture(new RpcRequest());
+        future.done(response(null, 0, "boom"));
+        future.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = ServerBusyException.class)
+    public void testServerBusy() throws Exception {
+        RpcFuture future = new RpcFuture(new RpcRequest());
+        future.done(response(null, RpcResponse.CODE_BUSY, "busy"));
+        future.get(1, TimeUnit.SECONDS);
+    }
+
+    @Test(expected = RpcTimeoutException.class)
+    public void testGetTimeout() throws Exception {
+        new RpcFuture(new RpcRequest()).get(10, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 时间轮到期后从等待表移除并以超时结束, 之后到达的响应被丢弃
+     */
+    @Test
+    public void testExpireOnTimer() throws Exception {
+        PendingCalls calls = new PendingCalls();
+        RpcFuture future = new RpcFuture(new RpcRequest());
+        calls.put(1L, future);
+        future.setTimeout(timer.newTimeout(t -> {
+            RpcFuture expired = calls.remove(1L);
+            if (null != expired) {
+                expired.fail(new RpcTimeoutException("request [1] timeout"));
+            }
+        }, 20, TimeUnit.MILLISECONDS));
+
+        CompletableFuture<Object> completable = future.toCompletableFuture();
+        try {
+            completable.get(5, TimeUnit.SECONDS);
+            fail("expected timeout");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RpcTimeoutException);
+        }
+        assertEquals(0, calls.size());
+        assertNull(calls.remove(1L));
+
+        future.done(response("late", 0, null));
+        assertTrue(completable.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testDoneCancelsTimeout() {
+        RpcFuture future = new RpcFuture(new RpcRequest());
+        Timeout timeout = timer.newTimeout(t -> future.fail(new RpcTimeoutException("timeout")), 1, TimeUnit.MINUTES);
+        future.setTimeout(timeout);
+        future.done(response("hello", 0, null));
+        assertTrue(timeout.isCancelled());
+    }
+
+    @Test
+    public void testTimeoutSetAfterDoneIsCancelled() {
+        RpcFuture future = new RpcFuture(new RpcRequest());
+        future.done(response("hello", 0, null));
+        Timeout timeout = timer.newTimeout(t -> future.fail(new RpcTimeoutException("timeout")), 1, TimeUnit.MINUTES);
+        future.setTimeout(timeout);
+        assertTrue(timeout.isCancelled());
+    }
+
+}
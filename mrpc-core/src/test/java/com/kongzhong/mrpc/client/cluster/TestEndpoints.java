@@ -0,0 +1,24 @@
+package com.kongzhong.mrpc.client.cluster;
+
+/**
+ * 测试中创建指定权重的节点
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public final class TestEndpoints {
+
+    private TestEndpoints() {
+    }
+
+    public static Endpoint of(String address) {
+        return new Endpoint(address);
+    }
+
+    public static Endpoint of(String address, int weight, long startTime) {
+        Endpoint endpoint = new Endpoint(address);
+        endpoint.setWeight(weight, startTime);
+        return endpoint;
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.kongzhong.mrpc.client.cluster.ha;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * 重试预算测试
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class RetryBudgetTest {
+
+    /**
+     * 每秒保留的重试次数, 与RetryBudget一致
+     */
+    private static final int RESERVE_PER_SECOND = 10;
+
+    private final AtomicLong now = new AtomicLong(1_000_000_000L);
+
+    private int grant(RetryBudget budget, int attempts) {
+        int granted = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (budget.tryRetry()) {
+                granted++;
+            }
+        }
+        return granted;
+    }
+
+    @Test
+    public void testReserveWithoutCalls() {
+        RetryBudget budget = new RetryBudget(0.1, 10, now::get);
+        assertEquals(RESERVE_PER_SECOND * 10, grant(budget, 1000));
+        assertEquals(1000 - RESERVE_PER_SECOND * 10, budget.getExhausted());
+    }
+
+    @Test
+    public void testRatioOfCalls() {
+        RetryBudget budget = new RetryBudget(0.1, 10, now::get);
+        for (int i = 0; i < 5000; i++) {
+            budget.recordCall();
+        }
+        // 5000 * 0.1 + 保留的100次
+        assertEquals(500 + RESERVE_PER_SECOND * 10, grant(budget, 10_000));
+        assertFalse(budget.tryRetry());
+    }
+
+    @Test
+    public void testWindowSlides() {
+        RetryBudget budget = new RetryBudget(0.5, 2, now::get);
+        for (int i = 0; i < 100; i++) {
+            budget.recordCall();
+        }
+        assertEquals(50 + RESERVE_PER_SECOND * 2, grant(budget, 1000));
+
+        // 下一秒, 上一秒的调用和重试仍在窗口内
+        now.addAndGet(1000);
+        assertFalse(budget.tryRetry());
+
+        // 窗口滑过后, 之前的计数不再占用预算
+        now.addAndGet(1000);
+        assertEquals(RESERVE_PER_SECOND * 2, grant(budget, 1000));
+    }
+
+    @Test
+    public void testBucketReusedAfterWindow() {
+        RetryBudget budget = new RetryBudget(1.0, 1, now::get);
+        for (int i = 0; i < 10; i++) {
+            budget.recordCall();
+        }
+        assertEquals(10 + RESERVE_PER_SECOND, grant(budget, 100));
+
+        // 单个桶在新的一秒被清空, 不会累积上一秒的调用
+        now.addAndGet(1000);
+        assertEquals(RESERVE_PER_SECOND, grant(budget, 100));
+    }
+
+}
@@ -0,0 +1,77 @@
+package com.kongzhong.mrpc.client.cluster.loadblance;
+
+import com.kongzhong.mrpc.client.cluster.Endpoint;
+import com.kongzhong.mrpc.client.cluster.TestEndpoints;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 一致性哈希测试
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class ConsistentHashSelectorTest {
+
+    private static final int KEYS = 10_000;
+
+    private final Endpoint a = TestEndpoints.of("10.0.0.1:5066");
+    private final Endpoint b = TestEndpoints.of("10.0.0.2:5066");
+    private final Endpoint c = TestEndpoints.of("10.0.0.3:5066");
+
+    @Test
+    public void testSameKeySameEndpoint() {
+        ConsistentHashSelector selector = new ConsistentHashSelector(new Endpoint[]{a, b, c});
+        // 节点数组顺序不影响key的归属
+        ConsistentHashSelector reordered = new ConsistentHashSelector(new Endpoint[]{c, a, b});
+        for (int key = 0; key < KEYS; key++) {
+            assertSame(selector.select(key), selector.select(key));
+            assertSame(selector.select(key), reordered.select(key));
+        }
+    }
+
+    @Test
+    public void testKeysSpreadAcrossEndpoints() {
+        ConsistentHashSelector selector = new ConsistentHashSelector(new Endpoint[]{a, b, c});
+        Map<Endpoint, Integer> counts = new HashMap<>();
+        for (int key = 0; key < KEYS; key++) {
+            counts.merge(selector.select("user-" + key), 1, Integer::sum);
+        }
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue("count " + count, count > KEYS / 3 / 2));
+    }
+
+    /**
+     * 节点离开时只有该节点上的key改变归属
+     */
+    @Test
+    public void testRemoveOnlyRemapsRemovedKeys() {
+        ConsistentHashSelector before = new ConsistentHashSelector(new Endpoint[]{a, b, c});
+        ConsistentHashSelector after = new ConsistentHashSelector(new Endpoint[]{a, c});
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            Endpoint old = before.select("user-" + key);
+            Endpoint now = after.select("user-" + key);
+            if (old == b) {
+                assertNotSame(b, now);
+                moved++;
+            } else {
+                assertSame(old, now);
+            }
+        }
+        assertTrue(moved > 0);
+    }
+
+    @Test
+    public void testSnapshot() {
+        Endpoint[] endpoints = {a, b, c};
+        ConsistentHashSelector selector = new ConsistentHashSelector(endpoints);
+        assertTrue(selector.isSnapshotOf(endpoints));
+        assertFalse(selector.isSnapshotOf(endpoints.clone()));
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.kongzhong.mrpc.client.cluster.loadblance;
+
+import com.kongzhong.mrpc.client.cluster.Endpoint;
+import com.kongzhong.mrpc.client.cluster.TestEndpoints;
+import com.kongzhong.mrpc.config.ClientConfig;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * 平滑加权轮询测试
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class WeightedRoundRobinTest {
+
+    @After
+    public void tearDown() {
+        ClientConfig.me().setWarmup(0);
+    }
+
+    private static Map<Endpoint, Integer> select(WeightedRoundRobin round, int times) {
+        Map<Endpoint, Integer> counts = new HashMap<>();
+        for (int i = 0; i < times; i++) {
+            counts.merge(round.select(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    @Test
+    public void testDistributionFollowsWeight() {
+        Endpoint a = TestEndpoints.of("10.0.0.1:5066", 500, 0);
+        Endpoint b = TestEndpoints.of("10.0.0.2:5066", 300, 0);
+        Endpoint c = TestEndpoints.of("10.0.0.3:5066", 200, 0);
+        Map<Endpoint, Integer> counts = select(new WeightedRoundRobin(new Endpoint[]{a, b, c}), 1000);
+        assertEquals(500, (int) counts.get(a));
+        assertEquals(300, (int) counts.get(b));
+        assertEquals(200, (int) counts.get(c));
+    }
+
+    /**
+     * 权重高的节点穿插在其他节点之间, 不会连续被选中
+     */
+    @Test
+    public void testSmooth() {
+        Endpoint a = TestEndpoints.of("10.0.0.1:5066", 5, 0);
+        Endpoint b = TestEndpoints.of("10.0.0.2:5066", 1, 0);
+        Endpoint c = TestEndpoints.of("10.0.0.3:5066", 1, 0);
+        WeightedRoundRobin round = new WeightedRoundRobin(new Endpoint[]{a, b, c});
+        StringBuilder order = new StringBuilder();
+        for (int i = 0; i < 7; i++) {
+            Endpoint endpoint = round.select();
+            order.append(endpoint == a ? 'a' : endpoint == b ? 'b' : 'c');
+        }
+        assertEquals("aabacaa", order.toString());
+    }
+
+    @Test
+    public void testZeroWeightNeverSelected() {
+        Endpoint a = TestEndpoints.of("10.0.0.1:5066", 100, 0);
+        Endpoint b = TestEndpoints.of("10.0.0.2:5066", 0, 0);
+        Map<Endpoint, Integer> counts = select(new WeightedRoundRobin(new Endpoint[]{a, b}), 100);
+        assertEquals(100, (int) counts.get(a));
+        assertNull(counts.get(b));
+    }
+
+    /**
+     * 预热中的节点按运行时间比例分到较少的请求
+     */
+    @Test
+    public void testWarmup() {
+        ClientConfig.me().setWarmup(600);
+        long now = System.currentTimeMillis();
+        Endpoint warm = TestEndpoints.of("10.0.0.1:5066", 100, now - TimeUnit.MINUTES.toMillis(30));
+        Endpoint cold = TestEndpoints.of("10.0.0.2:5066", 100, now - TimeUnit.MINUTES.toMillis(1));
+        Endpoint half = TestEndpoints.of("10.0.0.3:5066", 100, now - TimeUnit.MINUTES.toMillis(5));
+
+        assertEquals(100, warm.getWeight());
+        assertEquals(10, cold.getWeight(), 1);
+        assertEquals(50, half.getWeight(), 1);
+
+        Map<Endpoint, Integer> counts = select(new WeightedRoundRobin(new Endpoint[]{warm, cold, half}), 1600);
+        assertTrue(counts.get(warm) > counts.get(half));
+        assertTrue(counts.get(half) > counts.get(cold));
+        assertEquals(1000, counts.get(warm), 20);
+        assertEquals(100, counts.get(cold), 20);
+    }
+
+    @Test
+    public void testNoWarmupUsesFullWeight() {
+        Endpoint endpoint = TestEndpoints.of("10.0.0.1:5066", 100, System.currentTimeMillis());
+        assertEquals(100, endpoint.getWeight());
+    }
+
+}
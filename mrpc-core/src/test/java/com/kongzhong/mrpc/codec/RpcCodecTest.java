@@ -0,0 +1,193 @@
+package com.kongzhong.mrpc.codec;
+
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.serialize.RpcSerialize;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.DecoderException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * 编解码测试
+ *
+ * @author biezhi
+ *         2017/5/24
+ */
+public class RpcCodecTest {
+
+    /**
+     * 测试使用的jdk序列化
+     */
+    static class JavaSerialize implements RpcSerialize {
+
+        @Override
+        public <T> byte[] serialize(T obj) throws Exception {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                out.writeObject(obj);
+            }
+            return bytes.toByteArray();
+        }
+
+        @Override
+        public <T> T deserialize(byte[] data, Class<T> clazz) throws Exception {
+            try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+                return clazz.cast(in.readObject());
+            }
+        }
+    }
+
+    private static final int COMPRESS_THRESHOLD = 1024;
+
+    private RpcSerialize rpcSerialize = new JavaSerialize();
+    private RpcEncoder encoder;
+    private EmbeddedChannel encodeChannel;
+    private EmbeddedChannel decodeChannel;
+
+    @Before
+    public void setUp() {
+        encoder = new RpcEncoder(rpcSerialize, RpcRequest.class, COMPRESS_THRESHOLD);
+        encodeChannel = new EmbeddedChannel(encoder);
+        decodeChannel = new EmbeddedChannel(RpcProtocol.newFrameDecoder(), new RpcDecoder(rpcSerialize, RpcRequest.class));
+    }
+
+    private static RpcRequest request(long requestId, String payload) {
+        RpcRequest request = new RpcRequest();
+        request.setRequestId(requestId);
+        request.setClassName("com.kongzhong.mrpc.demo.UserService");
+        request.setMethodName("hello");
+        request.setParameterTypes(new Class<?>[]{String.class});
+        request.setParameters(new Object[]{payload});
+        return request;
+    }
+
+    /**
+     * 生成序列化后消息体恰好为bodyLength字节的请求
+     */
+    private RpcRequest requestOfSize(long requestId, int bodyLength) throws Exception {
+        int baseline = rpcSerialize.serialize(request(requestId, "")).length;
+        RpcRequest request = request(requestId, payload(bodyLength - baseline));
+        // 超过64K的字符串序列化时长度字段更长, 按实际长度修正一次
+        int actual = rpcSerialize.serialize(request).length;
+        if (actual != bodyLength) {
+            request = request(requestId, payload(bodyLength - baseline - (actual - bodyLength)));
+        }
+        assertEquals(bodyLength, rpcSerialize.serialize(request).length);
+        return request;
+    }
+
+    private static String payload(int length) {
+        char[] payload = new char[length];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (char) ('a' + i % 7);
+        }
+        return new String(payload);
+    }
+
+    private ByteBuf encode(Object message) {
+        assertTrue(encodeChannel.writeOutbound(message));
+        return encodeChannel.readOutbound();
+    }
+
+    private <T> T decode(ByteBuf frame) {
+        assertTrue(decodeChannel.writeInbound(frame));
+        return decodeChannel.readInbound();
+    }
+
+    private void negotiate() {
+        encoder.setCompression(true);
+        RpcHandshake handshake = decode(encode(new RpcHandshake(true)));
+        assertTrue(handshake.isCompression());
+    }
+
+    private void assertRoundTrip(RpcRequest request, boolean compressed) {
+        ByteBuf frame = encode(request);
+        assertEquals(compressed, (frame.getByte(RpcProtocol.FLAGS_OFFSET) & RpcProtocol.FLAG_COMPRESSED) != 0);
+        RpcRequest decoded = decode(frame);
+        assertEquals(request.getRequestId(), decoded.getRequestId());
+        assertEquals(request.getMethodName(), decoded.getMethodName());
+        assertArrayEquals(request.getParameters(), decoded.getParameters());
+    }
+
+    @Test
+    public void testRoundTrip() {
+        assertRoundTrip(request(42L, "hello"), false);
+    }
+
+    @Test
+    public void testNoCompressionBeforeNegotiation() throws Exception {
+        assertRoundTrip(requestOfSize(1L, 8 * 1024), false);
+    }
+
+    @Test
+    public void testSmallBodyNotCompressed() {
+        negotiate();
+        assertRoundTrip(request(2L, "hello"), false);
+    }
+
+    /**
+     * 消息体在32K分块边界附近时压缩后仍能完整还原
+     */
+    @Test
+    public void testCompressedAroundBlockBoundary() throws Exception {
+        negotiate();
+        int block = Short.MAX_VALUE;
+        for (int bodyLength : Arrays.asList(block - 1, block, block + 1, block * 2, block * 2 + 1, block * 3 + 7)) {
+            assertRoundTrip(requestOfSize(bodyLength, bodyLength), true);
+        }
+    }
+
+    @Test
+    public void testCompressedFrameShorterThanBody() throws Exception {
+        negotiate();
+        int bodyLength = 64 * 1024;
+        ByteBuf frame = encode(requestOfSize(3L, bodyLength));
+        try {
+            assertTrue(frame.readableBytes() < RpcProtocol.HEADER_LENGTH + bodyLength / 2);
+        } finally {
+            frame.release();
+        }
+    }
+
+    @Test(expected = DecoderException.class)
+    public void testRejectCompressedFrameWithoutHandshake() throws Exception {
+        encoder.setCompression(true);
+        ByteBuf frame = encode(requestOfSize(4L, 8 * 1024));
+        decodeChannel.writeInbound(frame);
+    }
+
+    @Test
+    public void testCompressionDisabledWithoutThreshold() throws Exception {
+        encoder = new RpcEncoder(rpcSerialize, RpcRequest.class);
+        encodeChannel = new EmbeddedChannel(encoder);
+        negotiate();
+        assertRoundTrip(requestOfSize(5L, 8 * 1024), false);
+    }
+
+    @Test
+    public void testHandshakeRoundTrip() {
+        Map<String, Integer> methodIds = new HashMap<>();
+        methodIds.put("com.kongzhong.mrpc.demo.UserService.hello(java.lang.String)", 1);
+        methodIds.put("com.kongzhong.mrpc.demo.UserService.getUser(int)", 2);
+
+        RpcHandshake handshake = decode(encode(new RpcHandshake(methodIds, false)));
+        assertEquals(methodIds, handshake.getMethodIds());
+        assertFalse(handshake.isCompression());
+
+        handshake = decode(encode(new RpcHandshake(methodIds, true)));
+        assertEquals(methodIds, handshake.getMethodIds());
+        assertTrue(handshake.isCompression());
+    }
+
+}
@@ -4,10 +4,12 @@ import com.github.zkclient.*;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.kongzhong.mrpc.client.cluster.Connections;
+import com.kongzhong.mrpc.client.cluster.Endpoint;
 import com.kongzhong.mrpc.config.ClientConfig;
 import com.kongzhong.mrpc.exception.RpcException;
 import com.kongzhong.mrpc.registry.Constant;
 import com.kongzhong.mrpc.registry.ServiceDiscovery;
+import com.kongzhong.mrpc.utils.StringUtils;
 import org.apache.zookeeper.Watcher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -73,11 +75,17 @@ public class ZookeeperServiceDiscovery implements ServiceDiscovery {
 
             // { 127.0.0.1:5066 => [UserService, BatService] }
             Map<String, Set<String>> mappings = Maps.newHashMap();
+            // { 127.0.0.1:5066 => weight=100&timestamp=1495597200000 }
+            Map<String, String> nodes = Maps.newHashMap();
             serviceList.forEach(service -> {
                 String servicePath = Constant.ZK_ROOT + "/" + ClientConfig.me().getAppId() + "/" + service;
                 if (zkClient.exists(servicePath)) {
                     List<String> addresses = zkClient.getChildren(servicePath);
                     addresses.forEach(address -> {
+                        byte[] data = zkClient.readData(servicePath + "/" + address, true);
+                        if (null != data) {
+                            nodes.put(address, new String(data));
+                        }
                         if (!mappings.containsKey(address)) {
                             mappings.put(address, Sets.newHashSet(service));
                         } else {
@@ -97,11 +105,27 @@ public class ZookeeperServiceDiscovery implements ServiceDiscovery {
 
             // update node list
             Connections.me().updateNodes(mappings);
+            nodes.forEach(this::updateWeight);
         } catch (Exception e) {
             LOGGER.error("", e);
         }
     }
 
+    /**
+     * 解析节点数据中的权重和启动时间, 旧版本服务端的节点数据为空
+     */
+    private void updateWeight(String address, String data) {
+        Map<String, String> params = Maps.newHashMap();
+        for (String item : data.split("&")) {
+            String[] kv = item.split("=");
+            if (kv.length == 2) {
+                params.put(kv[0], kv[1]);
+            }
+        }
+        Connections.me().updateWeight(address,
+                StringUtils.toInt(params.get("weight"), Endpoint.DEFAULT_WEIGHT), StringUtils.toLong(params.get("timestamp"), 0));
+    }
+
     class ZkChildListener implements IZkChildListener {
         @Override
         public void handleChildChange(String parentPath, List<String> currentChildren) throws Exception {
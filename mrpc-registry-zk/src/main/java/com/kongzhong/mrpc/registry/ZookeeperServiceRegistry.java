@@ -57,7 +57,9 @@ public class ZookeeperServiceRegistry implements ServiceRegistry {
         }
 
         log.debug("create node [{}]", path);
-        zkClient.createEphemeral(path + "/" + address, "".getBytes());
+        // 节点数据: weight=100&timestamp=1495597200000
+        String data = "weight=" + ServerConfig.me().getWeight() + "&timestamp=" + ServerConfig.me().getStartTime();
+        zkClient.createEphemeral(path + "/" + address, data.getBytes());
     }
 
 }
\ No newline at end of file
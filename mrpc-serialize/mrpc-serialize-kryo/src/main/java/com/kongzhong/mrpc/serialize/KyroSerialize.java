@@ -1,12 +1,17 @@
 package com.kongzhong.mrpc.serialize;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
 import com.esotericsoftware.kryo.io.Input;
 import com.esotericsoftware.kryo.io.Output;
 import com.kongzhong.mrpc.exception.SerializeException;
+import com.kongzhong.mrpc.model.RpcRequest;
+import com.kongzhong.mrpc.model.RpcResponse;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 
 /**
  * Kyro序列化实现
@@ -23,10 +28,22 @@ public class KyroSerialize implements RpcSerialize {
             // kryo.setRegistrationRequired(false);
             // kryo.setReferences(true);
             // kryo.setInstantiatorStrategy(new StdInstantiatorStrategy());
+            // 注册协议对象, 避免每一帧都写入完整类名
+            kryo.register(RpcRequest.class);
+            kryo.register(RpcResponse.class);
+            kryo.register(Class.class);
+            kryo.register(Class[].class);
+            kryo.register(Object[].class);
             return kryo;
         }
     };
 
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private ThreadLocal<ByteBufferInput> inputs = ThreadLocal.withInitial(ByteBufferInput::new);
+
+    private ThreadLocal<Output> outputs = ThreadLocal.withInitial(() -> new Output(4096));
+
     @Override
     public <T> byte[] serialize(T obj) throws Exception {
         try (ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -34,10 +51,25 @@ public class KyroSerialize implements RpcSerialize {
             Kryo kryo = kryos.get();
             // writeObjectOrNull object.getClass()
             kryo.writeClassAndObject(output, obj);
-            byte[] bs = output.toBytes();
-            return bs;
+            // 超过缓冲区大小的数据已经刷到bos, 不能使用output.toBytes()
+            output.flush();
+            return bos.toByteArray();
+        } catch (Exception e) {
+            throw new SerializeException(e);
+        }
+    }
+
+    @Override
+    public <T> void serialize(T obj, OutputStream out) throws Exception {
+        Output output = outputs.get();
+        try {
+            output.setOutputStream(out);
+            kryos.get().writeClassAndObject(output, obj);
+            output.flush();
         } catch (Exception e) {
             throw new SerializeException(e);
+        } finally {
+            output.setOutputStream(null);
         }
     }
 
@@ -53,4 +85,20 @@ public class KyroSerialize implements RpcSerialize {
         }
     }
 
+    @Override
+    public <T> T deserialize(ByteBuffer buffer, Class<T> clazz) throws Exception {
+        ByteBufferInput input = inputs.get();
+        try {
+            // 直接读取ByteBuffer(可以是堆外内存), 不产生中间拷贝
+            input.setBuffer(buffer);
+            Object bean = kryos.get().readClassAndObject(input);
+            return clazz.cast(bean);
+        } catch (Exception e) {
+            throw new SerializeException(e);
+        } finally {
+            // 释放对帧内存的引用
+            input.setBuffer(EMPTY_BUFFER);
+        }
+    }
+
 }
@@ -8,6 +8,10 @@ import com.kongzhong.mrpc.exception.SerializeException;
 import org.objenesis.Objenesis;
 import org.objenesis.ObjenesisStd;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -40,6 +44,24 @@ public class ProtostuffSerialize implements RpcSerialize {
         }
     }
 
+    /**
+     * 序列化（对象 -> 输出流）
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public <T> void serialize(T obj, OutputStream out) throws Exception {
+        Class<T> cls = (Class<T>) obj.getClass();
+        LinkedBuffer buffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+        try {
+            Schema<T> schema = getSchema(cls);
+            ProtostuffIOUtil.writeTo(out, obj, schema, buffer);
+        } catch (Exception e) {
+            throw new SerializeException(e.getMessage(), e);
+        } finally {
+            buffer.clear();
+        }
+    }
+
     /**
      * 反序列化（字节数组 -> 对象）
      */
@@ -55,6 +77,29 @@ public class ProtostuffSerialize implements RpcSerialize {
         }
     }
 
+    /**
+     * 反序列化（ByteBuffer -> 对象）
+     * <p>
+     * 堆内存直接按偏移量读取底层数组, 堆外内存通过输入流分块读取, 不再整体拷贝
+     */
+    @Override
+    public <T> T deserialize(ByteBuffer buffer, Class<T> cls) throws Exception {
+        try {
+            T message = (T) objenesis.newInstance(cls);
+            Schema<T> schema = getSchema(cls);
+            if (buffer.hasArray()) {
+                ProtostuffIOUtil.mergeFrom(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining(), message, schema);
+                buffer.position(buffer.limit());
+            } else {
+                LinkedBuffer linkedBuffer = LinkedBuffer.allocate(LinkedBuffer.DEFAULT_BUFFER_SIZE);
+                ProtostuffIOUtil.mergeFrom(new ByteBufferInputStream(buffer), message, schema, linkedBuffer);
+            }
+            return message;
+        } catch (Exception e) {
+            throw new SerializeException(e.getMessage(), e);
+        }
+    }
+
     private <T> Schema<T> getSchema(Class<T> cls) {
         Schema<T> schema = (Schema<T>) cachedSchema.get(cls);
         if (schema == null) {
@@ -66,4 +111,36 @@ public class ProtostuffSerialize implements RpcSerialize {
         return schema;
     }
 
+    /**
+     * ByteBuffer输入流
+     */
+    private static class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.remaining());
+            buffer.get(b, off, n);
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return buffer.remaining();
+        }
+    }
+
 }
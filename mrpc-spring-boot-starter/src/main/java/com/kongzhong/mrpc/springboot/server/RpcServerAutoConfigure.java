@@ -1,26 +1,21 @@
 package com.kongzhong.mrpc.springboot.server;
 
-import com.google.common.util.concurrent.*;
 import com.kongzhong.mrpc.common.thread.NamedThreadFactory;
-import com.kongzhong.mrpc.common.thread.RpcThreadPool;
 import com.kongzhong.mrpc.config.DefaultConfig;
 import com.kongzhong.mrpc.config.NettyConfig;
 import com.kongzhong.mrpc.config.ServerConfig;
 import com.kongzhong.mrpc.enums.RegistryEnum;
 import com.kongzhong.mrpc.interceptor.RpcInteceptor;
-import com.kongzhong.mrpc.model.RpcRequest;
-import com.kongzhong.mrpc.model.RpcResponse;
 import com.kongzhong.mrpc.registry.ServiceDiscovery;
 import com.kongzhong.mrpc.registry.ServiceRegistry;
 import com.kongzhong.mrpc.serialize.RpcSerialize;
 import com.kongzhong.mrpc.server.RpcMapping;
 import com.kongzhong.mrpc.server.SimpleRpcServer;
+import com.kongzhong.mrpc.transport.EventLoopSupport;
 import com.kongzhong.mrpc.transport.TransferSelector;
-import com.kongzhong.mrpc.transport.http.HttpResponse;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.*;
-import io.netty.channel.nio.NioEventLoopGroup;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.epoll.EpollChannelOption;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -31,11 +26,8 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.env.Environment;
 
-import java.nio.channels.spi.SelectorProvider;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ThreadFactory;
-import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration
 @EnableConfigurationProperties(RpcServerProperties.class)
@@ -79,8 +71,6 @@ public class RpcServerAutoConfigure {
      */
     protected NettyConfig nettyConfig;
 
-    protected static final ListeningExecutorService TPE = MoreExecutors.listeningDecorator((ThreadPoolExecutor) RpcThreadPool.getExecutor(16, -1));
-
     @Bean
     public InitBean initBean() {
         return new InitBean(rpcMapping);
@@ -110,72 +100,6 @@ public class RpcServerAutoConfigure {
         };
     }
 
-    /**
-     * 提交任务,异步获取结果.
-     *
-     * @param task
-     * @param ctx
-     * @param request
-     * @param response
-     */
-    public static void submit(Callable<Boolean> task, final ChannelHandlerContext ctx, final RpcRequest request, final RpcResponse response) {
-
-        //提交任务, 异步获取结果
-        ListenableFuture<Boolean> listenableFuture = TPE.submit(task);
-
-        //注册回调函数, 在task执行完之后 异步调用回调函数
-        Futures.addCallback(listenableFuture, new FutureCallback<Boolean>() {
-            @Override
-            public void onSuccess(Boolean result) {
-                //为返回msg回客户端添加一个监听器,当消息成功发送回客户端时被异步调用.
-                ctx.writeAndFlush(response).addListener(new ChannelFutureListener() {
-                    /**
-                     * 服务端回显 request已经处理完毕
-                     * @param channelFuture
-                     * @throws Exception
-                     */
-                    public void operationComplete(ChannelFuture channelFuture) throws Exception {
-                        log.debug("request [{}] success.", request.getRequestId());
-                    }
-                });
-            }
-
-            @Override
-            public void onFailure(Throwable t) {
-                log.error("", t);
-            }
-        }, TPE);
-    }
-
-    public static void submit(Callable<HttpResponse> task, final ChannelHandlerContext ctx) {
-        //提交任务, 异步获取结果
-        ListenableFuture<HttpResponse> listenableFuture = TPE.submit(task);
-        //注册回调函数, 在task执行完之后 异步调用回调函数
-        Futures.addCallback(listenableFuture, new FutureCallback<HttpResponse>() {
-            @Override
-            public void onSuccess(HttpResponse response) {
-                //为返回msg回客户端添加一个监听器,当消息成功发送回客户端时被异步调用.
-                ctx.writeAndFlush(response).addListener(new ChannelFutureListener() {
-                    /**
-                     * 服务端回显 request已经处理完毕
-                     * @param channelFuture
-                     * @throws Exception
-                     */
-                    @Override
-                    public void operationComplete(ChannelFuture channelFuture) throws Exception {
-                        log.debug("request [{}] success.", response.getRequestId());
-                    }
-
-                });
-            }
-
-            @Override
-            public void onFailure(Throwable t) {
-                log.error("", t);
-            }
-        }, TPE);
-    }
-
     /**
      * 销毁资源
      */
@@ -198,6 +122,33 @@ public class RpcServerAutoConfigure {
         if (null == nettyConfig) {
             nettyConfig = DefaultConfig.nettyServerConfig();
         }
+        if (null != rpcServerProperties.getFlushConsolidation()) {
+            nettyConfig.setFlushConsolidation(rpcServerProperties.getFlushConsolidation());
+        }
+        if (null != rpcServerProperties.getFlushBatchSize()) {
+            nettyConfig.setFlushBatchSize(rpcServerProperties.getFlushBatchSize());
+        }
+        if (null != rpcServerProperties.getEpoll()) {
+            nettyConfig.setEpoll(rpcServerProperties.getEpoll());
+        }
+        if (null != rpcServerProperties.getAcceptors()) {
+            nettyConfig.setAcceptors(rpcServerProperties.getAcceptors());
+        }
+        if (null != rpcServerProperties.getCompressThreshold()) {
+            nettyConfig.setCompressThreshold(rpcServerProperties.getCompressThreshold());
+        }
+        ServerConfig.me().setFlushConsolidation(nettyConfig.isFlushConsolidation());
+        ServerConfig.me().setFlushBatchSize(nettyConfig.getFlushBatchSize());
+        ServerConfig.me().setCompressThreshold(nettyConfig.getCompressThreshold());
+        // 请求统一由SimpleRpcServer提交执行
+        if (null != rpcServerProperties.getBusinessThreads()) {
+            nettyConfig.setBusinessThreads(rpcServerProperties.getBusinessThreads());
+        }
+        if (null != rpcServerProperties.getBusinessQueues()) {
+            nettyConfig.setBusinessQueues(rpcServerProperties.getBusinessQueues());
+        }
+        SimpleRpcServer.useExecutor(rpcServerProperties.getExecutor(), nettyConfig.getBusinessThreads(), nettyConfig.getBusinessQueues());
+        rpcMapping.setBulkheadConfigs(rpcServerProperties.getBulkheads());
 
         if (null == serialize) {
             serialize = DefaultConfig.serialize();
@@ -208,16 +159,23 @@ public class RpcServerAutoConfigure {
         ThreadFactory threadRpcFactory = new NamedThreadFactory("mrpc-server");
         int parallel = Runtime.getRuntime().availableProcessors() * 2;
 
-        EventLoopGroup boss = new NioEventLoopGroup();
-        EventLoopGroup worker = new NioEventLoopGroup(parallel, threadRpcFactory, SelectorProvider.provider());
+        // epoll下开启SO_REUSEPORT, 多个acceptor绑定同一端口分摊accept
+        boolean epoll = EventLoopSupport.useEpoll(nettyConfig.isEpoll());
+        int acceptors = epoll ? Math.max(1, nettyConfig.getAcceptors()) : 1;
+
+        EventLoopGroup boss = EventLoopSupport.newEventLoopGroup(epoll, acceptors, new NamedThreadFactory("mrpc-boss"));
+        EventLoopGroup worker = EventLoopSupport.newEventLoopGroup(epoll, parallel, threadRpcFactory);
 
         try {
             ServerBootstrap bootstrap = new ServerBootstrap();
-            bootstrap.group(boss, worker).channel(NioServerSocketChannel.class)
+            bootstrap.group(boss, worker).channel(EventLoopSupport.serverChannelClass(epoll))
                     .childHandler(transferSelector.getServerChannelHandler(transport))
                     .option(ChannelOption.SO_BACKLOG, nettyConfig.getBacklog())
                     .childOption(ChannelOption.SO_KEEPALIVE, nettyConfig.isKeepalive())
                     .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(nettyConfig.getLowWaterMark(), nettyConfig.getHighWaterMark()));
+            if (acceptors > 1) {
+                bootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            }
 
             String[] ipAddr = rpcServerProperties.getAddress().split(":");
             if (ipAddr.length == 2) {
@@ -230,8 +188,14 @@ public class RpcServerAutoConfigure {
                 if (null != rpcServerProperties.getAppId()) {
                     ServerConfig.me().setAppId(rpcServerProperties.getAppId());
                 }
+                if (null != rpcServerProperties.getWeight()) {
+                    ServerConfig.me().setWeight(rpcServerProperties.getWeight());
+                }
 
                 ChannelFuture future = bootstrap.bind(host, port).sync();
+                for (int i = 1; i < acceptors; i++) {
+                    bootstrap.bind(host, port).sync();
+                }
 
                 if (null == serviceRegistry) {
                     serviceRegistry = DefaultConfig.registry();
@@ -243,7 +207,8 @@ public class RpcServerAutoConfigure {
                     log.info("=> [{}] - [{}]", serviceName, rpcServerProperties.getAddress());
                 }
                 log.info("publish services finished!");
-                log.info("mrpc server start with => {}", port);
+                rpcMapping.report();
+                log.info("mrpc server start with => {}, transport [{}], acceptors [{}]", port, epoll ? "epoll" : "nio", acceptors);
 
                 future.channel().closeFuture().sync();
 
@@ -1,8 +1,12 @@
 package com.kongzhong.mrpc.springboot.server;
 
+import com.kongzhong.mrpc.config.BulkheadConfig;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * @author biezhi
  *         2017/5/13
@@ -15,5 +19,24 @@ public class RpcServerProperties {
     private String transport;
     private String registry;
     private String appId;
+    private Boolean flushConsolidation;
+    private Integer flushBatchSize;
+    private Boolean epoll;
+    private Integer acceptors;
+    private Integer compressThreshold;
+    /**
+     * 业务执行方式: pool, virtual
+     */
+    private String executor;
+    private Integer businessThreads;
+    private Integer businessQueues;
+    /**
+     * 服务权重, 默认100
+     */
+    private Integer weight;
+    /**
+     * 隔离线程池, 名称 -> 配置
+     */
+    private Map<String, BulkheadConfig> bulkheads = new HashMap<>();
 
 }